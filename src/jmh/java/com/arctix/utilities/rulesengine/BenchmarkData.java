@@ -0,0 +1,107 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine;
+
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.Requirements;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates rule sets and data sets of a given size for benchmarks. Every feature has one
+ * pre-condition and three conditions, spread over three data sources, that are satisfied by the
+ * generated data set.
+ */
+public final class BenchmarkData {
+
+  public static final String STATUS = "profile:status";
+  public static final String REGISTRATION_DATE = "profile:registration-date";
+  public static final String SEGMENT = "orders:segment";
+  public static final String ATTRIBUTE = "preferences:attribute-";
+
+  /* number of distinct preference attributes referenced by features */
+  public static final int ATTRIBUTES = 50;
+
+  private BenchmarkData() {}
+
+  /**
+   * @param featureCount - number of features in the rule set
+   * @param cardinality - number of values in each oneOf condition
+   * @return
+   */
+  public static Rules rules(int featureCount, int cardinality) {
+    List<String> segments = values("segment-", cardinality);
+    List<Feature> features = new ArrayList<>(featureCount);
+    for (int i = 0; i < featureCount; i++) {
+      EvaluationCondition status = new EvaluationCondition(STATUS, "ACTIVE");
+      status.setType("data");
+      EvaluationCondition segment = new EvaluationCondition(SEGMENT, segments);
+      segment.setType("data");
+      EvaluationCondition registered = new EvaluationCondition(REGISTRATION_DATE, 180);
+      registered.setType("data");
+      EvaluationCondition attribute =
+          new EvaluationCondition(ATTRIBUTE + (i % ATTRIBUTES), "value-" + (i % ATTRIBUTES));
+      attribute.setType("data");
+      features.add(
+          new Feature(
+              "feature-" + i,
+              new Requirements(
+                  Collections.singletonList(status),
+                  Arrays.asList(segment, registered, attribute))));
+    }
+    return new Rules(features);
+  }
+
+  /**
+   * @param parameterCount - number of parameters in the data set, in addition to those required
+   *     by the generated rules
+   * @param cardinality - number of values of the segment parameter
+   * @return
+   */
+  public static DataSet dataSet(int parameterCount, int cardinality) {
+    DataSet dataSet = new DataSet();
+    dataSet.addParameter(new Parameter(STATUS, "ACTIVE"));
+    dataSet.addParameter(
+        new Parameter(
+            REGISTRATION_DATE,
+            OffsetDateTime.now(ZoneOffset.UTC)
+                .minusDays(10)
+                .truncatedTo(ChronoUnit.SECONDS)
+                .toString()));
+    for (String segment : values("segment-", cardinality)) {
+      dataSet.addParameter(new Parameter(SEGMENT, segment));
+    }
+    for (int i = 0; i < ATTRIBUTES; i++) {
+      dataSet.addParameter(new Parameter(ATTRIBUTE + i, "value-" + i));
+    }
+    for (int i = 0; i < parameterCount; i++) {
+      dataSet.addParameter(new Parameter("filler:parameter-" + i, "value-" + i));
+    }
+    return dataSet;
+  }
+
+  public static byte[] json(Rules rules) {
+    return new Gson().toJson(rules).getBytes(StandardCharsets.UTF_8);
+  }
+
+  public static List<String> values(String prefix, int count) {
+    List<String> values = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      values.add(prefix + i);
+    }
+    return values;
+  }
+}
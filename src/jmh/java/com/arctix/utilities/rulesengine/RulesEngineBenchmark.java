@@ -0,0 +1,75 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine;
+
+import com.arctix.utilities.rulesengine.datasources.DataFetchService;
+import com.arctix.utilities.rulesengine.datasources.DataSourceAdaptor;
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.RulesFileLoader;
+import com.arctix.utilities.rulesengine.rules.models.RuleEvaluationResult;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Executes rules end-to-end, with data source adaptors that return a prepared data set without
+ * any I/O, so that only the overhead of the engine is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RulesEngineBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  int featureCount;
+
+  @Param({"1", "10", "100"})
+  int cardinality;
+
+  @Param({"0", "1000"})
+  int parameterCount;
+
+  private RulesEngine rulesEngine;
+
+  private final Map<String, String> userData = Collections.singletonMap("id", "benchmark-user");
+
+  @Setup
+  public void setUp() {
+    final Rules rules = BenchmarkData.rules(featureCount, cardinality);
+    final DataSet dataSet = BenchmarkData.dataSet(parameterCount, cardinality);
+    final DataSourceAdaptor adaptor = dfe -> CompletableFuture.completedFuture(dataSet);
+    DataFetchService dataService =
+        new DataFetchService() {
+          @Override
+          protected DataSourceAdaptor getDataFetcher(String name) {
+            return adaptor;
+          }
+        };
+    RulesFileLoader rulesLoader =
+        new RulesFileLoader() {
+          @Override
+          public Rules load(String path) {
+            return rules;
+          }
+        };
+    rulesEngine = new RulesEngine(dataService, rulesLoader);
+  }
+
+  @Benchmark
+  public List<RuleEvaluationResult> executeRules() {
+    return rulesEngine.executeRules("benchmark-rules", userData).join();
+  }
+}
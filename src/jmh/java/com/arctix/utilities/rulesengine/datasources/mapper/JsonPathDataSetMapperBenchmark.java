@@ -0,0 +1,64 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources.mapper;
+
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonPathDataSetMapperBenchmark {
+
+  /* number of attributes in the json document, and of keys mapped from it */
+  @Param({"1", "10", "100"})
+  int keyCount;
+
+  /* number of values of each attribute */
+  @Param({"1", "10"})
+  int cardinality;
+
+  private JsonPathDataSetMapper mapper;
+
+  private List<ParameterKey> keys;
+
+  private String json;
+
+  @Setup
+  public void setUp() {
+    mapper = new JsonPathDataSetMapper();
+    mapper.jsonPaths = new LinkedHashMap<>();
+    keys = new ArrayList<>(keyCount);
+    StringBuilder document = new StringBuilder("{\"attributes\":{");
+    for (int i = 0; i < keyCount; i++) {
+      ParameterKey key = new ParameterKey("profile:attribute-" + i);
+      keys.add(key);
+      mapper.jsonPaths.put(key.toString(), "$.attributes.attribute" + i + "[*]");
+      document.append(i == 0 ? "" : ",").append("\"attribute").append(i).append("\":[");
+      for (int j = 0; j < cardinality; j++) {
+        document.append(j == 0 ? "" : ",").append("\"value-").append(j).append('"');
+      }
+      document.append(']');
+    }
+    json = document.append("}}").toString();
+  }
+
+  @Benchmark
+  public DataSet toDataSet() {
+    return mapper.toDataSet(keys, json);
+  }
+}
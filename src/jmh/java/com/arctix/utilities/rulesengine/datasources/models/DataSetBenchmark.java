@@ -0,0 +1,64 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources.models;
+
+import com.arctix.utilities.rulesengine.BenchmarkData;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DataSetBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  int parameterCount;
+
+  @Param({"1", "100"})
+  int cardinality;
+
+  private DataSet dataSet;
+
+  private ParameterKey[] keys;
+
+  private int next;
+
+  @Setup
+  public void setUp() {
+    dataSet = BenchmarkData.dataSet(parameterCount, cardinality);
+    keys = new ParameterKey[BenchmarkData.ATTRIBUTES];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = new ParameterKey(BenchmarkData.ATTRIBUTE + i);
+    }
+  }
+
+  @Benchmark
+  public List<Parameter> getParametersByKey() {
+    next = (next + 1) % keys.length;
+    return dataSet.getParameters(keys[next]);
+  }
+
+  @Benchmark
+  public List<Parameter> getParametersByCompositeKey() {
+    return dataSet.getParameters(BenchmarkData.SEGMENT);
+  }
+
+  @Benchmark
+  public DataSet addAll() {
+    DataSet copy = new DataSet();
+    copy.addAll(dataSet);
+    return copy;
+  }
+}
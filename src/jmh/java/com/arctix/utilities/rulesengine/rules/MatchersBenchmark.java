@@ -0,0 +1,74 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import com.arctix.utilities.rulesengine.BenchmarkData;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.utils.CaseInsensitiveSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatchersBenchmark {
+
+  @Param({"1", "10", "100"})
+  int cardinality;
+
+  private List<String> options;
+
+  private CaseInsensitiveSet optionSet;
+
+  private Parameter value;
+
+  private Parameter date;
+
+  @Setup
+  public void setUp() {
+    options = BenchmarkData.values("Segment-", cardinality);
+    optionSet = new CaseInsensitiveSet(options);
+    value = new Parameter(BenchmarkData.SEGMENT, "segment-" + (cardinality - 1));
+    date = new Parameter(BenchmarkData.REGISTRATION_DATE, "2021-06-15T10:15:30Z");
+  }
+
+  @Benchmark
+  public boolean isEqualTo() {
+    return Matchers.isEqualTo("SEGMENT-0", value);
+  }
+
+  @Benchmark
+  public boolean isOneOfList() {
+    return Matchers.isOneOf(options, value);
+  }
+
+  @Benchmark
+  public boolean isOneOfSet() {
+    return Matchers.isOneOf(optionSet, value);
+  }
+
+  @Benchmark
+  public boolean contains() {
+    return Matchers.contains("ment", value);
+  }
+
+  @Benchmark
+  public boolean isWithinDays() {
+    return Matchers.isWithinDays(180, date);
+  }
+
+  @Benchmark
+  public boolean isAfter() {
+    return Matchers.isAfter("2021-01-01T00:00:00Z", date);
+  }
+}
@@ -0,0 +1,56 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import com.arctix.utilities.rulesengine.BenchmarkData;
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.models.RuleEvaluationResult;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RulesEvaluatorBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  int featureCount;
+
+  @Param({"1", "10", "100"})
+  int cardinality;
+
+  @Param({"0", "1000"})
+  int parameterCount;
+
+  private CompiledRules rules;
+
+  private DataSet dataSet;
+
+  @Setup
+  public void setUp() {
+    rules = RulesCompiler.compileRules(BenchmarkData.rules(featureCount, cardinality));
+    dataSet = BenchmarkData.dataSet(parameterCount, cardinality);
+  }
+
+  @Benchmark
+  public List<RuleEvaluationResult> evaluatePreConditions() {
+    return new RulesEvaluator(dataSet, rules, RulesEvaluator.Options.PRE_CONDITIONS_ONLY)
+        .evaluate();
+  }
+
+  @Benchmark
+  public List<RuleEvaluationResult> evaluateConditions() {
+    return new RulesEvaluator(dataSet, rules, RulesEvaluator.Options.CONDITIONS_ONLY).evaluate();
+  }
+}
@@ -0,0 +1,65 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import com.arctix.utilities.rulesengine.BenchmarkData;
+import com.arctix.utilities.rulesengine.config.RulesLoaderProperties;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RulesFileLoaderBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  int featureCount;
+
+  @Param({"0", "1000"})
+  int parallelChunkSize;
+
+  private RulesFileLoader loader;
+
+  private byte[] content;
+
+  private SnapshotRulesLoader snapshotLoader;
+
+  private byte[] snapshot;
+
+  @Setup
+  public void setUp() {
+    loader = new RulesFileLoader();
+    loader.setProperties(
+        new RulesLoaderProperties.Builder().parallelChunkSize(parallelChunkSize).build());
+    content = BenchmarkData.json(BenchmarkData.rules(featureCount, 10));
+    snapshotLoader = new SnapshotRulesLoader();
+    snapshot = RulesSnapshot.toBytes(loader.load(content));
+  }
+
+  @Benchmark
+  public Rules load() {
+    return loader.load(content);
+  }
+
+  @Benchmark
+  public Rules loadSnapshot() {
+    return snapshotLoader.load(snapshot);
+  }
+
+  @Benchmark
+  public CompiledRules loadCompiledSnapshot() {
+    return RulesSnapshot.readCompiled(ByteBuffer.wrap(snapshot));
+  }
+}
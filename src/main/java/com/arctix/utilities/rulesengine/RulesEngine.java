@@ -4,18 +4,30 @@
  @year: 2021 */
 package com.arctix.utilities.rulesengine;
 
-import static org.apache.commons.collections4.CollectionUtils.isEmpty;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 
 import com.arctix.utilities.rulesengine.datasources.DataFetchService;
 import com.arctix.utilities.rulesengine.datasources.models.DataFetchResult;
+import com.arctix.utilities.rulesengine.rules.CompiledRulesLoader;
+import com.arctix.utilities.rulesengine.rules.RulesCompiler;
 import com.arctix.utilities.rulesengine.rules.RulesEvaluator;
 import com.arctix.utilities.rulesengine.rules.RulesLoader;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledFeature;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
 import com.arctix.utilities.rulesengine.rules.models.*;
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -33,6 +45,10 @@ public class RulesEngine {
 
   private RulesLoader rulesLoader;
 
+  private RulesCompiler rulesCompiler = new RulesCompiler();
+
+  private Clock clock = Clock.systemUTC();
+
   private static final Logger LOG = LoggerFactory.getLogger(RulesEngine.class);
 
   @Autowired
@@ -41,6 +57,29 @@ public class RulesEngine {
     this.rulesLoader = rulesLoader;
   }
 
+  /**
+   * Compiler of the rules to execute, which remembers the compiled plan of each rule set. Shared
+   * with the rules loader, so that rule sets reloaded in the background are compiled before they
+   * are used.
+   *
+   * @param rulesCompiler
+   */
+  @Autowired(required = false)
+  public void setRulesCompiler(RulesCompiler rulesCompiler) {
+    this.rulesCompiler = rulesCompiler;
+  }
+
+  /**
+   * Clock used for evaluating date conditions (eg. withinDays). Each execution reads the clock
+   * once, so that pre-conditions and conditions are evaluated at the same instant.
+   *
+   * @param clock
+   */
+  @Autowired(required = false)
+  public void setClock(Clock clock) {
+    this.clock = clock;
+  }
+
   /**
    * Loads & evaluates rules from the given file.
    *
@@ -51,13 +90,19 @@ public class RulesEngine {
    */
   public CompletableFuture<List<RuleEvaluationResult>> executeRules(
       final String ruleSetName, final Map<?, ?> userData) {
+    if (rulesLoader instanceof CompiledRulesLoader) {
+      return ((CompiledRulesLoader) rulesLoader)
+          .loadCompiled(ruleSetName)
+          .thenCompose(compiled -> executeRules(compiled, userData));
+    }
     final Rules rules = rulesLoader.load(ruleSetName);
     return executeRules(rules, userData);
   }
 
   /**
    * Evaluates the given business rules. Intended to be used if business rules are created
-   * programmatically instead of the rules-engine DSL
+   * programmatically instead of the rules-engine DSL. The returned future fails if the rules
+   * cannot be compiled (eg. a date condition is not valid).
    *
    * @param rules
    * @param userData
@@ -65,20 +110,410 @@ public class RulesEngine {
    */
   public CompletableFuture<List<RuleEvaluationResult>> executeRules(
       final Rules rules, final Map<?, ?> userData) {
-    return fetchDataAndEvaluateRules(rules, userData, RulesEvaluator.Options.PRE_CONDITIONS_ONLY)
+    return rulesCompiler.plan(rules).thenCompose(compiled -> executeRules(compiled, userData));
+  }
+
+  /**
+   * Evaluates the given compiled business rules.
+   *
+   * @param rules
+   * @param userData
+   * @return
+   */
+  public CompletableFuture<List<RuleEvaluationResult>> executeRules(
+      final CompiledRules rules, final Map<?, ?> userData) {
+    final Map<String, List<ParameterKey>> prefetched =
+        getConditionParameters(rules, FetchMode.SINGLE_PASS);
+    final Map<String, List<ParameterKey>> speculative =
+        getConditionParameters(rules, FetchMode.SPECULATIVE);
+    final Clock evaluationClock = fixedClock();
+    if (!prefetched.isEmpty() || !speculative.isEmpty()) {
+      return fetchDataAndEvaluateRulesEagerly(
+          rules, prefetched, speculative, userData, evaluationClock);
+    }
+    return fetchDataAndEvaluateRules(
+            rules, userData, RulesEvaluator.Options.PRE_CONDITIONS_ONLY, evaluationClock)
         .thenApply(preEvalResult -> filterRulesToEvaluate(rules, preEvalResult))
         .thenCompose(
             filteredRules ->
-                fetchDataAndEvaluateRules(
-                    filteredRules, userData, RulesEvaluator.Options.CONDITIONS_ONLY));
+                fetchDataAndEvaluateConditions(
+                    filteredRules,
+                    filteredRules.getParametersByDataSource(
+                        RulesEvaluator.Options.CONDITIONS_ONLY),
+                    noData(),
+                    userData,
+                    evaluationClock));
+  }
+
+  /**
+   * Loads & evaluates rules from the given file for many users. Rules are loaded and their
+   * parameters planned once for the whole batch, and data is fetched for all users together, so
+   * that data source adaptors implementing `BatchDataSourceAdaptor` can serve all users with a
+   * single call. Very large user collections should be split into chunks by the caller.
+   *
+   * @param ruleSetName - name of the file containing the rules to be evaluated
+   * @param userData - contextual data of each user
+   * @return evaluation results of each user, in the same order as the given user data
+   */
+  public CompletableFuture<List<List<RuleEvaluationResult>>> executeRulesInBatch(
+      final String ruleSetName, final List<? extends Map<?, ?>> userData) {
+    if (rulesLoader instanceof CompiledRulesLoader) {
+      return ((CompiledRulesLoader) rulesLoader)
+          .loadCompiled(ruleSetName)
+          .thenCompose(compiled -> executeRulesInBatch(compiled, userData));
+    }
+    final Rules rules = rulesLoader.load(ruleSetName);
+    return executeRulesInBatch(rules, userData);
+  }
+
+  public CompletableFuture<List<List<RuleEvaluationResult>>> executeRulesInBatch(
+      final Rules rules, final List<? extends Map<?, ?>> userData) {
+    return rulesCompiler
+        .plan(rules)
+        .thenCompose(compiled -> executeRulesInBatch(compiled, userData));
+  }
+
+  public CompletableFuture<List<List<RuleEvaluationResult>>> executeRulesInBatch(
+      final CompiledRules rules, final List<? extends Map<?, ?>> userData) {
+    final Clock evaluationClock = fixedClock();
+    return fetchDataAndEvaluateRulesInBatch(
+            Collections.nCopies(userData.size(), rules),
+            userData,
+            RulesEvaluator.Options.PRE_CONDITIONS_ONLY,
+            evaluationClock)
+        .thenApply(preEvalResults -> filterRulesToEvaluateInBatch(rules, preEvalResults))
+        .thenCompose(
+            filteredRules -> {
+              CompletableFuture<List<List<RuleEvaluationResult>>> evalResults =
+                  fetchDataAndEvaluateRulesInBatch(
+                      filteredRules,
+                      userData,
+                      RulesEvaluator.Options.CONDITIONS_ONLY,
+                      evaluationClock);
+              if (rules.getFeatures().stream().noneMatch(CompiledFeature::hasPostConditions)) {
+                return evalResults;
+              }
+              List<CompiledRules> postRules =
+                  filteredRules.stream()
+                      .map(userRules -> userRules.filter(CompiledFeature::hasPostConditions))
+                      .collect(Collectors.toList());
+              return evalResults.thenCombine(
+                  fetchDataAndEvaluateRulesInBatch(
+                      postRules,
+                      userData,
+                      RulesEvaluator.Options.POST_CONDITIONS_ONLY,
+                      evaluationClock),
+                  (results, postResults) -> {
+                    List<List<RuleEvaluationResult>> filtered = new ArrayList<>(results.size());
+                    for (int user = 0; user < results.size(); user++) {
+                      filtered.add(
+                          filterEvaluationResults(
+                              postRules.get(user), results.get(user), postResults.get(user)));
+                    }
+                    return filtered;
+                  });
+            });
+  }
+
+  protected CompletableFuture<List<List<RuleEvaluationResult>>> fetchDataAndEvaluateRulesInBatch(
+      List<CompiledRules> rulesToEvaluate,
+      List<? extends Map<?, ?>> userData,
+      RulesEvaluator.Options options,
+      Clock evaluationClock) {
+    LOG.debug("{}: Fetching data for {} users", options, userData.size());
+    List<Map<String, List<ParameterKey>>> parameters =
+        rulesToEvaluate.stream()
+            .map(rules -> rules.getParametersByDataSource(options))
+            .collect(Collectors.toList());
+    return dataService
+        .fetchDataInBatch(parameters, userData)
+        .thenApply(
+            results -> {
+              List<List<RuleEvaluationResult>> evalResults = new ArrayList<>(results.size());
+              for (int user = 0; user < results.size(); user++) {
+                evalResults.add(
+                    evaluateRules(
+                        results.get(user), rulesToEvaluate.get(user), options, evaluationClock));
+              }
+              return evalResults;
+            });
+  }
+
+  /**
+   * Filter rules to evaluate for each user of a batch. Users whose pre-conditions were satisfied
+   * by the same features share the same (filtered) rules, so that parameters are planned once per
+   * distinct set of features rather than once per user.
+   *
+   * @param rules
+   * @param preEvalResults
+   * @return
+   */
+  protected List<CompiledRules> filterRulesToEvaluateInBatch(
+      final CompiledRules rules, final List<List<RuleEvaluationResult>> preEvalResults) {
+    Map<List<CompiledFeature>, CompiledRules> plans = new HashMap<>();
+    plans.put(rules.getFeatures(), rules);
+    return preEvalResults.stream()
+        .map(
+            preEvalResult ->
+                rules.getFeatures().stream()
+                    .filter(hasPreConditionSatisfied(preEvalResult))
+                    .collect(Collectors.toList()))
+        .map(
+            features ->
+                plans.computeIfAbsent(
+                    features, unused -> new CompiledRules(features, rules.getFetchMode())))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Fetches condition data of data sources in single pass mode along with pre-condition data, and
+   * condition data of data sources in speculative mode in parallel with pre-condition data.
+   * Condition data of lazy data sources is fetched after pre-conditions are evaluated, for features
+   * that satisfy them. Speculative data that is not needed by those features is discarded.
+   *
+   * @param rules
+   * @param prefetched - condition parameters to fetch along with pre-condition parameters
+   * @param speculative - condition parameters to fetch in parallel with pre-condition parameters
+   * @param userData
+   * @param evaluationClock
+   * @return
+   */
+  protected CompletableFuture<List<RuleEvaluationResult>> fetchDataAndEvaluateRulesEagerly(
+      final CompiledRules rules,
+      final Map<String, List<ParameterKey>> prefetched,
+      final Map<String, List<ParameterKey>> speculative,
+      final Map<?, ?> userData,
+      final Clock evaluationClock) {
+    final Map<String, List<ParameterKey>> parameters =
+        new LinkedHashMap<>(
+            rules.getParametersByDataSource(RulesEvaluator.Options.PRE_CONDITIONS_ONLY));
+    prefetched.forEach(
+        (dataSource, keys) ->
+            parameters.merge(
+                dataSource,
+                keys,
+                (preKeys, conditionKeys) ->
+                    Stream.concat(preKeys.stream(), conditionKeys.stream())
+                        .distinct()
+                        .collect(Collectors.toList())));
+    LOG.debug("Fetching condition data eagerly for rules: {}", rules.getFeatures());
+
+    final CompletableFuture<DataFetchResult> speculativeFetch =
+        speculative.isEmpty() ? noData() : dataService.fetchData(speculative, userData);
+
+    return dataService
+        .fetchData(parameters, userData)
+        .thenCompose(
+            result -> {
+              CompiledRules filteredRules =
+                  filterRulesToEvaluate(
+                      rules,
+                      evaluateRules(
+                          result,
+                          rules,
+                          RulesEvaluator.Options.PRE_CONDITIONS_ONLY,
+                          evaluationClock));
+              Map<String, List<ParameterKey>> remaining =
+                  new LinkedHashMap<>(
+                      filteredRules.getParametersByDataSource(
+                          RulesEvaluator.Options.CONDITIONS_ONLY));
+              remaining.keySet().removeAll(prefetched.keySet());
+              boolean speculationNeeded = remaining.keySet().removeAll(speculative.keySet());
+              if (!speculationNeeded && !speculative.isEmpty()) {
+                LOG.debug("Discarding speculative data from: {}", speculative.keySet());
+                speculativeFetch.cancel(false);
+              }
+
+              CompletableFuture<DataFetchResult> fetched =
+                  (speculationNeeded ? speculativeFetch : noData())
+                      .thenApply(
+                          speculativeResult ->
+                              new DataFetchResult.Builder()
+                                  .addResult(result)
+                                  .addResult(speculativeResult)
+                                  .build());
+              return fetchDataAndEvaluateConditions(
+                  filteredRules, remaining, fetched, userData, evaluationClock);
+            })
+        .whenComplete(
+            (results, throwable) -> {
+              // speculative data is not needed once evaluation has failed
+              if (nonNull(throwable)) {
+                speculativeFetch.cancel(false);
+              }
+            });
+  }
+
+  /**
+   * Fetches the given condition parameters and evaluates conditions of the given rules, along
+   * with data that has already been fetched. Parameters of data sources in deferred fetch mode are
+   * fetched last, and only for features whose outcome is not decided by conditions on data from
+   * other data sources. Post-condition data is fetched in parallel with condition data, and
+   * results of features whose post-conditions are not satisfied are discarded.
+   *
+   * @param rules
+   * @param parameters - condition parameters that have not been fetched
+   * @param fetched - data that has been (or is being) fetched
+   * @param userData
+   * @param evaluationClock
+   * @return
+   */
+  protected CompletableFuture<List<RuleEvaluationResult>> fetchDataAndEvaluateConditions(
+      final CompiledRules rules,
+      final Map<String, List<ParameterKey>> parameters,
+      final CompletableFuture<DataFetchResult> fetched,
+      final Map<?, ?> userData,
+      final Clock evaluationClock) {
+    final Map<String, List<ParameterKey>> immediate = new LinkedHashMap<>(parameters);
+    final Set<String> deferred = new LinkedHashSet<>();
+    parameters
+        .keySet()
+        .forEach(
+            dataSource -> {
+              if (getFetchMode(rules, dataSource) == FetchMode.DEFERRED) {
+                immediate.remove(dataSource);
+                deferred.add(dataSource);
+              }
+            });
+
+    final CompiledRules postRules = rules.filter(CompiledFeature::hasPostConditions);
+    final CompletableFuture<DataFetchResult> postFetch =
+        fetchData(
+            postRules.getParametersByDataSource(RulesEvaluator.Options.POST_CONDITIONS_ONLY),
+            userData);
+
+    return fetchData(immediate, userData)
+        .thenCombine(
+            fetched,
+            (result, fetchedResult) ->
+                new DataFetchResult.Builder().addResult(fetchedResult).addResult(result).build())
+        .thenCompose(
+            available -> {
+              if (deferred.isEmpty()) {
+                return CompletableFuture.completedFuture(available);
+              }
+              Set<CompiledFeature> decided =
+                  new HashSet<>(
+                      new RulesEvaluator(
+                              available.getDataSet(),
+                              rules,
+                              RulesEvaluator.Options.CONDITIONS_ONLY,
+                              evaluationClock)
+                          .getFeaturesDecidedWithout(deferred));
+              Map<String, List<ParameterKey>> deferredParameters =
+                  new LinkedHashMap<>(
+                      rules
+                          .filter(feature -> !decided.contains(feature))
+                          .getParametersByDataSource(RulesEvaluator.Options.CONDITIONS_ONLY));
+              deferredParameters.keySet().retainAll(deferred);
+              LOG.debug(
+                  "Fetching deferred data from {} for features not decided by: {}",
+                  deferredParameters.keySet(),
+                  decided);
+              return fetchData(deferredParameters, userData)
+                  .thenApply(
+                      deferredResult ->
+                          new DataFetchResult.Builder()
+                              .addResult(available)
+                              .addResult(deferredResult)
+                              .build());
+            })
+        .thenCombine(
+            postFetch,
+            (allResults, postResult) -> {
+              List<RuleEvaluationResult> evalResult =
+                  evaluateRules(
+                      allResults, rules, RulesEvaluator.Options.CONDITIONS_ONLY, evaluationClock);
+              if (postRules.getFeatures().isEmpty()) {
+                return evalResult;
+              }
+              return filterEvaluationResults(
+                  postRules,
+                  evalResult,
+                  evaluateRules(
+                      postResult,
+                      postRules,
+                      RulesEvaluator.Options.POST_CONDITIONS_ONLY,
+                      evaluationClock));
+            });
+  }
+
+  private CompletableFuture<DataFetchResult> fetchData(
+      final Map<String, List<ParameterKey>> parameters, final Map<?, ?> userData) {
+    return parameters.isEmpty() ? noData() : dataService.fetchData(parameters, userData);
+  }
+
+  /* clock fixed at the current instant, shared by all stages of an execution */
+  private Clock fixedClock() {
+    return Clock.fixed(clock.instant(), clock.getZone());
+  }
+
+  private static CompletableFuture<DataFetchResult> noData() {
+    return CompletableFuture.completedFuture(new DataFetchResult.Builder().build());
+  }
+
+  /**
+   * Condition parameters of data sources that are fetched in the given mode, grouped by data
+   * source.
+   *
+   * @param rules
+   * @param fetchMode
+   * @return
+   */
+  protected Map<String, List<ParameterKey>> getConditionParameters(
+      final CompiledRules rules, final FetchMode fetchMode) {
+    Map<String, List<ParameterKey>> parameters = new LinkedHashMap<>();
+    rules
+        .getParametersByDataSource(RulesEvaluator.Options.CONDITIONS_ONLY)
+        .forEach(
+            (dataSource, keys) -> {
+              if (getFetchMode(rules, dataSource) == fetchMode) {
+                parameters.put(dataSource, keys);
+              }
+            });
+    return parameters;
   }
 
+  /**
+   * Fetch mode of a data source is set by the rules being executed, or by the data source's
+   * settings if the rules do not set one.
+   *
+   * @param rules
+   * @param dataSource
+   * @return
+   */
+  protected FetchMode getFetchMode(final CompiledRules rules, final String dataSource) {
+    if (nonNull(rules.getFetchMode())) {
+      return rules.getFetchMode();
+    }
+    FetchMode fetchMode = dataService.getFetchMode(dataSource);
+    return isNull(fetchMode) ? FetchMode.LAZY : fetchMode;
+  }
+
+  /**
+   * @deprecated rules are compiled before they are evaluated, use {@link
+   *     #fetchDataAndEvaluateRules(CompiledRules, Map, RulesEvaluator.Options)}
+   */
+  @Deprecated
   protected CompletableFuture<List<RuleEvaluationResult>> fetchDataAndEvaluateRules(
       Rules rulesToEvaluate, Map<?, ?> userData, RulesEvaluator.Options options) {
+    return fetchDataAndEvaluateRules(rulesCompiler.compile(rulesToEvaluate), userData, options);
+  }
+
+  protected CompletableFuture<List<RuleEvaluationResult>> fetchDataAndEvaluateRules(
+      CompiledRules rulesToEvaluate, Map<?, ?> userData, RulesEvaluator.Options options) {
+    return fetchDataAndEvaluateRules(rulesToEvaluate, userData, options, clock);
+  }
+
+  protected CompletableFuture<List<RuleEvaluationResult>> fetchDataAndEvaluateRules(
+      CompiledRules rulesToEvaluate,
+      Map<?, ?> userData,
+      RulesEvaluator.Options options,
+      Clock evaluationClock) {
     LOG.debug("{}: Fetching data for rules: {}", options, rulesToEvaluate.getFeatures());
     return dataService
-        .fetchData(getParametersByDataSource(rulesToEvaluate, options), userData)
-        .thenApply(result -> evaluateRules(result, rulesToEvaluate, options));
+        .fetchData(rulesToEvaluate.getParametersByDataSource(options), userData)
+        .thenApply(result -> evaluateRules(result, rulesToEvaluate, options, evaluationClock));
   }
 
   /**
@@ -89,12 +524,26 @@ public class RulesEngine {
    * @param rules
    * @return
    */
+  protected CompiledRules filterRulesToEvaluate(
+      final CompiledRules rules, final List<RuleEvaluationResult> preEvalResult) {
+    return rules.filter(hasPreConditionSatisfied(preEvalResult));
+  }
+
+  /**
+   * @deprecated rules are compiled before they are evaluated, use {@link
+   *     #filterRulesToEvaluate(CompiledRules, List)}
+   */
+  @Deprecated
   protected Rules filterRulesToEvaluate(
       final Rules rules, final List<RuleEvaluationResult> preEvalResult) {
-    return new Rules(
-        rules.getFeatures().stream()
-            .filter(hasPreConditionSatisfied(preEvalResult))
-            .collect(Collectors.toList()));
+    Rules filtered =
+        new Rules(
+            rulesCompiler.compile(rules).getFeatures().stream()
+                .filter(hasPreConditionSatisfied(preEvalResult))
+                .map(CompiledFeature::getFeature)
+                .collect(Collectors.toList()));
+    filtered.setFetchMode(rules.getFetchMode());
+    return filtered;
   }
 
   /**
@@ -104,13 +553,59 @@ public class RulesEngine {
    * @param preEvalResult
    * @return
    */
-  protected Predicate<Feature> hasPreConditionSatisfied(List<RuleEvaluationResult> preEvalResult) {
-    return feature ->
-        isEmpty(feature.getRequirements().getPreConditions())
-            || preEvalResult.stream()
-                .filter(RuleEvaluationResult::hasMatch)
-                .map(RuleEvaluationResult::getFeature)
-                .anyMatch(matched -> matched.equalsIgnoreCase(feature.getName()));
+  protected Predicate<CompiledFeature> hasPreConditionSatisfied(
+      List<RuleEvaluationResult> preEvalResult) {
+    final Set<String> matchedFeatures = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    preEvalResult.stream()
+        .filter(RuleEvaluationResult::hasMatch)
+        .map(RuleEvaluationResult::getFeature)
+        .forEach(matchedFeatures::add);
+    return feature -> !feature.hasPreConditions() || matchedFeatures.contains(feature.getName());
+  }
+
+  /**
+   * Given results of evaluating conditions, discard results of features that have post-conditions
+   * that are not satisfied.
+   *
+   * @param rules
+   * @param evalResult
+   * @param postEvalResult
+   * @return
+   */
+  protected List<RuleEvaluationResult> filterEvaluationResults(
+      final CompiledRules rules,
+      final List<RuleEvaluationResult> evalResult,
+      final List<RuleEvaluationResult> postEvalResult) {
+    final Predicate<CompiledFeature> satisfied = hasPostConditionSatisfied(postEvalResult);
+    final Set<String> discarded = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    rules.getFeatures().stream()
+        .filter(satisfied.negate())
+        .map(CompiledFeature::getName)
+        .forEach(discarded::add);
+    if (discarded.isEmpty()) {
+      return evalResult;
+    }
+    LOG.debug("Post-conditions not satisfied by features: {}", discarded);
+    return evalResult.stream()
+        .filter(result -> !discarded.contains(result.getFeature()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Predicate to determine if post-condition has been met (by evaluating the post-condition). If
+   * there are no post-conditions, consider the rule satisfied.
+   *
+   * @param postEvalResult
+   * @return
+   */
+  protected Predicate<CompiledFeature> hasPostConditionSatisfied(
+      List<RuleEvaluationResult> postEvalResult) {
+    final Set<String> matchedFeatures = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    postEvalResult.stream()
+        .filter(RuleEvaluationResult::hasMatch)
+        .map(RuleEvaluationResult::getFeature)
+        .forEach(matchedFeatures::add);
+    return feature -> !feature.hasPostConditions() || matchedFeatures.contains(feature.getName());
   }
 
   /**
@@ -120,16 +615,20 @@ public class RulesEngine {
    * @param rules
    * @param options
    * @return
+   * @deprecated use {@link CompiledRules#getParametersByDataSource(RulesEvaluator.Options)}
    */
+  @Deprecated
   protected Map<String, List<ParameterKey>> getParametersByDataSource(
       final Rules rules, final RulesEvaluator.Options options) {
-    return rules.getFeatures().stream()
-        .flatMap(feature -> conditionsByType(feature.getRequirements(), options))
-        .map(condition -> new ParameterKey(condition.getKey()))
-        .distinct()
-        .collect(Collectors.groupingBy(ParameterKey::getDataSource));
+    return rulesCompiler.compile(rules).getParametersByDataSource(options);
   }
 
+  /**
+   * Conditions of the given type, excluding those nested in groups.
+   *
+   * @deprecated use {@link CompiledFeature#getConditions(RulesEvaluator.Options)}
+   */
+  @Deprecated
   protected Stream<EvaluationCondition> conditionsByType(
       final Requirements requirements, final RulesEvaluator.Options options) {
     if (options == RulesEvaluator.Options.PRE_CONDITIONS_ONLY) {
@@ -141,23 +640,45 @@ public class RulesEngine {
     }
   }
 
+  /**
+   * @deprecated rules are compiled before they are evaluated, use {@link
+   *     #evaluateRules(DataFetchResult, CompiledRules, RulesEvaluator.Options)}
+   */
+  @Deprecated
   protected List<RuleEvaluationResult> evaluateRules(
       final DataFetchResult dataFetchResult,
       final Rules rules,
       final RulesEvaluator.Options options) {
+    return evaluateRules(dataFetchResult, rulesCompiler.compile(rules), options);
+  }
+
+  protected List<RuleEvaluationResult> evaluateRules(
+      final DataFetchResult dataFetchResult,
+      final CompiledRules rules,
+      final RulesEvaluator.Options options) {
+    return evaluateRules(dataFetchResult, rules, options, clock);
+  }
 
-    List<Feature> featuresWithErrors = getFeaturesWithErrors(rules, dataFetchResult, options);
-    List<Feature> featuresToEvaluate = new ArrayList<>(rules.getFeatures());
+  protected List<RuleEvaluationResult> evaluateRules(
+      final DataFetchResult dataFetchResult,
+      final CompiledRules rules,
+      final RulesEvaluator.Options options,
+      final Clock evaluationClock) {
+
+    List<CompiledFeature> featuresWithErrors =
+        getFeaturesWithErrors(rules, dataFetchResult, options);
+    CompiledRules rulesToEvaluate = rules;
     if (isNotEmpty(featuresWithErrors)) {
       LOG.warn(
           "The following features will not be evaluated due to errors in fetching data from data sources: {}",
           featuresWithErrors);
-      featuresToEvaluate.removeAll(featuresWithErrors);
-      LOG.debug("Features to be evaluated: {}", featuresToEvaluate);
+      rulesToEvaluate = rules.filter(feature -> !featuresWithErrors.contains(feature));
+      LOG.debug("Features to be evaluated: {}", rulesToEvaluate.getFeatures());
     }
 
     RulesEvaluator evaluator =
-        new RulesEvaluator(dataFetchResult.getDataSet(), new Rules(featuresToEvaluate), options);
+        new RulesEvaluator(
+            dataFetchResult.getDataSet(), rulesToEvaluate, options, evaluationClock);
     List<RuleEvaluationResult> ruleEvaluationResults = evaluator.evaluate();
     LOG.debug(
         "{}: Rules Evaluated: {} \nResult: {}",
@@ -167,26 +688,53 @@ public class RulesEngine {
     return ruleEvaluationResults;
   }
 
+  /**
+   * @deprecated rules are compiled before they are evaluated, use {@link
+   *     #getFeaturesWithErrors(CompiledRules, DataFetchResult, RulesEvaluator.Options)}
+   */
+  @Deprecated
   protected List<Feature> getFeaturesWithErrors(
       final Rules allRules,
       final DataFetchResult dataFetchResult,
       final RulesEvaluator.Options options) {
+    return getFeaturesWithErrors(rulesCompiler.compile(allRules), dataFetchResult, options)
+        .stream()
+        .map(CompiledFeature::getFeature)
+        .collect(Collectors.toList());
+  }
+
+  protected List<CompiledFeature> getFeaturesWithErrors(
+      final CompiledRules allRules,
+      final DataFetchResult dataFetchResult,
+      final RulesEvaluator.Options options) {
     final Set<String> dataSourceNamesWithExceptions =
         dataFetchResult.getDataSourceWithExceptions().keySet();
+    if (dataSourceNamesWithExceptions.isEmpty()) {
+      return Collections.emptyList();
+    }
     return allRules.getFeatures().stream()
         .filter(
             feature -> hasExceptionsForCondition(feature, dataSourceNamesWithExceptions, options))
         .collect(Collectors.toList());
   }
 
+  protected boolean hasExceptionsForCondition(
+      final CompiledFeature feature,
+      final Set<String> dataSourceWithExceptions,
+      RulesEvaluator.Options options) {
+    return feature.getDataSources(options).stream().anyMatch(dataSourceWithExceptions::contains);
+  }
+
+  /**
+   * @deprecated rules are compiled before they are evaluated, use {@link
+   *     #hasExceptionsForCondition(CompiledFeature, Set, RulesEvaluator.Options)}
+   */
+  @Deprecated
   protected boolean hasExceptionsForCondition(
       final Feature feature,
       final Set<String> dataSourceWithExceptions,
       RulesEvaluator.Options options) {
-    return conditionsByType(feature.getRequirements(), options)
-        .anyMatch(
-            condition ->
-                dataSourceWithExceptions.contains(
-                    new ParameterKey(condition.getKey()).getDataSource()));
+    return hasExceptionsForCondition(
+        new CompiledFeature(feature), dataSourceWithExceptions, options);
   }
 }
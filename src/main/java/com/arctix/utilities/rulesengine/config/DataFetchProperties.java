@@ -0,0 +1,158 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.config;
+
+import com.arctix.utilities.rulesengine.rules.models.FetchMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Settings for fetching data from data source adaptors. */
+public class DataFetchProperties {
+
+  private long batchWindow = 0;
+
+  private int maxBatchSize = 50;
+
+  private boolean coalesceRequests = true;
+
+  private Map<String, CacheSettings> cacheSettings = Collections.emptyMap();
+
+  private FetchMode defaultFetchMode = FetchMode.LAZY;
+
+  private Map<String, FetchMode> fetchModes = Collections.emptyMap();
+
+  private DataFetchProperties(Builder builder) {
+    this.batchWindow = builder.batchWindow;
+    this.maxBatchSize = builder.maxBatchSize;
+    this.coalesceRequests = builder.coalesceRequests;
+    this.cacheSettings = Collections.unmodifiableMap(new HashMap<>(builder.cacheSettings));
+    this.defaultFetchMode = builder.defaultFetchMode;
+    this.fetchModes = Collections.unmodifiableMap(new HashMap<>(builder.fetchModes));
+  }
+
+  /**
+   * Time (in milliseconds) for which requests to a batch data source adaptor are held, so that
+   * concurrent requests can be sent to the adaptor in a single batch. Zero (default) disables
+   * batching.
+   */
+  public long getBatchWindow() {
+    return batchWindow;
+  }
+
+  /** Maximum number of requests sent to a batch data source adaptor in a single batch. */
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public boolean isBatchingEnabled() {
+    return batchWindow > 0 && maxBatchSize > 1;
+  }
+
+  /**
+   * If identical requests (same data source, user and parameters) that are made while an earlier
+   * one is still in progress should share the result of the earlier request. Only applies when a
+   * {@code UserIdentityResolver} bean is defined.
+   */
+  public boolean isCoalesceRequests() {
+    return coalesceRequests;
+  }
+
+  /**
+   * Returns settings for caching data fetched from the given data source.
+   *
+   * @param dataSource - name of the data source
+   * @return cache settings, or null if data from the data source is not cached
+   */
+  public CacheSettings getCacheSettings(String dataSource) {
+    return cacheSettings.get(dataSource);
+  }
+
+  public boolean isCacheEnabled(String dataSource) {
+    return cacheSettings.containsKey(dataSource);
+  }
+
+  /**
+   * Returns the mode in which condition data is fetched from the given data source, unless
+   * overridden by the rule set being executed.
+   */
+  public FetchMode getFetchMode(String dataSource) {
+    return fetchModes.getOrDefault(dataSource, defaultFetchMode);
+  }
+
+  /** Settings for caching data fetched from a data source. */
+  public static final class CacheSettings {
+    private final long expiry;
+    private final int maxEntries;
+
+    public CacheSettings(long expiry, int maxEntries) {
+      this.expiry = expiry;
+      this.maxEntries = maxEntries;
+    }
+
+    /** Time (in seconds) for which fetched data is cached. */
+    public long getExpiry() {
+      return expiry;
+    }
+
+    /** Maximum number of parameters cached, across all users. */
+    public int getMaxEntries() {
+      return maxEntries;
+    }
+  }
+
+  public static final class Builder {
+    long batchWindow = 0;
+    int maxBatchSize = 50;
+    boolean coalesceRequests = true;
+    Map<String, CacheSettings> cacheSettings = new HashMap<>();
+    FetchMode defaultFetchMode = FetchMode.LAZY;
+    Map<String, FetchMode> fetchModes = new HashMap<>();
+
+    public Builder batchWindow(long batchWindow) {
+      this.batchWindow = batchWindow;
+      return this;
+    }
+
+    public Builder maxBatchSize(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    public Builder coalesceRequests(boolean coalesceRequests) {
+      this.coalesceRequests = coalesceRequests;
+      return this;
+    }
+
+    /**
+     * Caches data fetched from the given data source. Data sources are not cached by default, and
+     * are only cached when a {@code UserIdentityResolver} bean is defined.
+     *
+     * @param dataSource - name of the data source
+     * @param expiry - time (in seconds) for which fetched data is cached
+     * @param maxEntries - maximum number of parameters cached, across all users
+     * @return
+     */
+    public Builder cache(String dataSource, long expiry, int maxEntries) {
+      this.cacheSettings.put(dataSource, new CacheSettings(expiry, maxEntries));
+      return this;
+    }
+
+    /** Fetch mode of data sources that do not have their own fetch mode. Defaults to lazy. */
+    public Builder fetchMode(FetchMode fetchMode) {
+      this.defaultFetchMode = fetchMode;
+      return this;
+    }
+
+    public Builder fetchMode(String dataSource, FetchMode fetchMode) {
+      this.fetchModes.put(dataSource, fetchMode);
+      return this;
+    }
+
+    public DataFetchProperties build() {
+      return new DataFetchProperties(this);
+    }
+  }
+}
@@ -14,11 +14,29 @@ public class RemoteConfigProperties {
 
   private int maxStale = 300;
 
+  private int cacheMaxEntries = 10;
+
+  private long cacheMaxBytes = Long.MAX_VALUE;
+
+  private boolean offHeapCache;
+
+  private String httpCacheDirectory;
+
+  private long httpCacheSize = 50L * 1024 * 1024;
+
+  private boolean refreshAhead;
+
   private RemoteConfigProperties(Builder builder) {
     this.basicAuth = builder.basicAuth;
     this.useCache = builder.useCache;
     this.cacheExpiry = builder.cacheExpiry;
     this.maxStale = builder.maxStale;
+    this.cacheMaxEntries = builder.cacheMaxEntries;
+    this.cacheMaxBytes = builder.cacheMaxBytes;
+    this.offHeapCache = builder.offHeapCache;
+    this.httpCacheDirectory = builder.httpCacheDirectory;
+    this.httpCacheSize = builder.httpCacheSize;
+    this.refreshAhead = builder.refreshAhead;
   }
 
   public String getBasicAuth() {
@@ -37,11 +55,51 @@ public class RemoteConfigProperties {
     return maxStale;
   }
 
+  /** Maximum number of configs cached. */
+  public int getCacheMaxEntries() {
+    return cacheMaxEntries;
+  }
+
+  /** Maximum total size (in bytes) of cached configs. */
+  public long getCacheMaxBytes() {
+    return cacheMaxBytes;
+  }
+
+  /** Store cached configs off-heap, so that large configs do not add to GC pressure. */
+  public boolean shouldCacheOffHeap() {
+    return offHeapCache;
+  }
+
+  /**
+   * Refresh cached configs in the background before they expire, as long as they are still being
+   * requested. Expired configs (up to maxStale) are returned while they are refreshed, rather than
+   * waiting for them to be fetched.
+   */
+  public boolean shouldRefreshAhead() {
+    return refreshAhead;
+  }
+
+  /** Directory of the HTTP (disk) cache of the http client. HTTP cache is not used if not set. */
+  public String getHttpCacheDirectory() {
+    return httpCacheDirectory;
+  }
+
+  /** Maximum size (in bytes) of the HTTP cache. */
+  public long getHttpCacheSize() {
+    return httpCacheSize;
+  }
+
   public static final class Builder {
     String basicAuth;
     boolean useCache = false;
     int cacheExpiry = 300;
     int maxStale = 300;
+    int cacheMaxEntries = 10;
+    long cacheMaxBytes = Long.MAX_VALUE;
+    boolean offHeapCache = false;
+    String httpCacheDirectory;
+    long httpCacheSize = 50L * 1024 * 1024;
+    boolean refreshAhead = false;
 
     public Builder basicAuth(String basicAuth) {
       this.basicAuth = basicAuth;
@@ -63,6 +121,28 @@ public class RemoteConfigProperties {
       return this;
     }
 
+    public Builder cacheSize(int maxEntries, long maxBytes) {
+      this.cacheMaxEntries = maxEntries;
+      this.cacheMaxBytes = maxBytes;
+      return this;
+    }
+
+    public Builder offHeapCache(boolean offHeapCache) {
+      this.offHeapCache = offHeapCache;
+      return this;
+    }
+
+    public Builder refreshAhead(boolean refreshAhead) {
+      this.refreshAhead = refreshAhead;
+      return this;
+    }
+
+    public Builder httpCache(String directory, long size) {
+      this.httpCacheDirectory = directory;
+      this.httpCacheSize = size;
+      return this;
+    }
+
     public RemoteConfigProperties build() {
       return new RemoteConfigProperties(this);
     }
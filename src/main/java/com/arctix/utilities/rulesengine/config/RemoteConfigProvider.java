@@ -9,8 +9,23 @@ import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import com.google.gson.Gson;
+import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -22,17 +37,40 @@ import org.springframework.stereotype.Component;
 @Component
 public class RemoteConfigProvider {
 
-  protected final SimpleCache cache = new SimpleCache(10);
+  protected final SimpleCache cache;
 
   protected OkHttpClient client;
 
   private static final Logger LOG = LoggerFactory.getLogger(RemoteConfigProvider.class);
 
+  private static final String ETAG = "ETag";
+  private static final String LAST_MODIFIED = "Last-Modified";
+
+  /* cached configs are refreshed when this much of their expiry has passed */
+  private static final double REFRESH_AHEAD_FACTOR = 0.8;
+
   private RemoteConfigProperties config;
 
+  /* ETag and Last-Modified headers of the cached config of each url */
+  private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+  /* urls requested since their config was last refreshed ahead of expiry */
+  private final Set<String> requested = ConcurrentHashMap.newKeySet();
+
+  /* urls whose config is waiting to be, or being, refreshed in the background */
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+  /* configs being fetched, by url, so that concurrent requests for a url share one fetch */
+  private final Map<String, CompletableFuture<ByteBuffer>> loading = new ConcurrentHashMap<>();
+
+  private final AtomicLong collapsedCount = new AtomicLong();
+
   @Autowired(required = false)
   public RemoteConfigProvider(RemoteConfigProperties config) {
     this.config = config;
+    this.cache =
+        new SimpleCache(
+            config.getCacheMaxEntries(), config.getCacheMaxBytes(), config.shouldCacheOffHeap());
     initHttpClient();
   }
 
@@ -42,23 +80,90 @@ public class RemoteConfigProvider {
 
   public void clearCache() {
     cache.clear();
+    validators.clear();
+    requested.clear();
   }
 
+  /**
+   * Returns config from the given url, from cache if caching is enabled. If refresh-ahead is
+   * enabled, an expired config is returned (while it is refreshed in the background) as long as it
+   * has not been purged from cache. Only one fetch of a url is made at a time, concurrent requests
+   * for the url get the expired config if it is still cached, or else wait for the fetch.
+   *
+   * @param resourceUrl
+   * @return
+   * @throws IOException
+   */
   public byte[] getConfig(String resourceUrl) throws IOException {
+    ByteBuffer content = getConfigBuffer(resourceUrl);
+    if (content.hasArray()
+        && content.arrayOffset() == 0
+        && content.remaining() == content.array().length) {
+      return content.array();
+    }
+    byte[] bytes = new byte[content.remaining()];
+    content.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns config from the given url as {@link #getConfig(String)} does, but as a buffer, so that
+   * configs cached off-heap are read without copying them.
+   *
+   * @param resourceUrl
+   * @return
+   * @throws IOException
+   */
+  public ByteBuffer getConfigBuffer(String resourceUrl) throws IOException {
     if (config.shouldUseCache()) {
-      byte[] content = cache.get(resourceUrl);
-      if (isNull(content)) {
-        content = fetchRemoteConfig(resourceUrl);
-        if (nonNull(content)) {
-          cache.add(resourceUrl, content, config.getCacheExpiry(), config.getMaxStale());
+      ByteBuffer content = cache.getBuffer(resourceUrl);
+      if (config.shouldRefreshAhead()) {
+        requested.add(resourceUrl);
+        if (isNull(content)) {
+          content = cache.getBuffer(resourceUrl, true);
+          if (nonNull(content)) {
+            refreshInBackground(resourceUrl);
+          }
         }
       }
+      if (isNull(content)) {
+        content = load(resourceUrl, false);
+      }
       return content;
     } else {
       return fetchRemoteConfig(resourceUrl);
     }
   }
 
+  /**
+   * Returns config from the given url as {@link #getConfigBuffer(String)} does, parsed by the given
+   * parser. Cached configs are parsed once per cached version, rather than on every request.
+   *
+   * @param resourceUrl
+   * @param type - type of the parsed config
+   * @param parser - parses a read-only buffer of the config
+   * @return
+   * @throws IOException
+   */
+  public <T> T getConfig(
+      String resourceUrl, Class<T> type, Function<ByteBuffer, ? extends T> parser)
+      throws IOException {
+    ByteBuffer content = getConfigBuffer(resourceUrl);
+    // the cached config is the one just returned, or one that has replaced it since
+    T parsed = config.shouldUseCache() ? cache.getParsed(resourceUrl, true, type, parser) : null;
+    return nonNull(parsed) ? parsed : parser.apply(content);
+  }
+
+  /**
+   * Returns the number of requests that did not fetch config themselves, as a fetch of the same
+   * url was already in flight.
+   *
+   * @return
+   */
+  public long getCollapsedRequestCount() {
+    return collapsedCount.get();
+  }
+
   public <T> T getConfig(String resourceUrl, Class<T> clazz) throws IOException {
     byte[] content = getConfig(resourceUrl);
     if (isNull(content)) {
@@ -67,19 +172,147 @@ public class RemoteConfigProvider {
     return new Gson().fromJson(new String(content), clazz);
   }
 
-  protected byte[] fetchRemoteConfig(String resourceUrl) throws IOException {
-    Request request = new Request.Builder().url(resourceUrl).build();
-    byte[] content;
+  private void cacheConfig(String resourceUrl, byte[] content) {
+    cache.add(resourceUrl, content, config.getCacheExpiry(), config.getMaxStale());
+    scheduleRefresh(resourceUrl);
+  }
+
+  /* keeps the cached config for another expiry, without copying it */
+  private ByteBuffer renewCachedConfig(String resourceUrl) {
+    ByteBuffer content = cache.getBuffer(resourceUrl, true);
+    if (nonNull(content)
+        && cache.renew(resourceUrl, config.getCacheExpiry(), config.getMaxStale())) {
+      scheduleRefresh(resourceUrl);
+    }
+    return content;
+  }
+
+  private void scheduleRefresh(String resourceUrl) {
+    if (config.shouldRefreshAhead() && config.getCacheExpiry() > 0) {
+      long delay = (long) (config.getCacheExpiry() * 1000L * REFRESH_AHEAD_FACTOR);
+      RefreshScheduler.INSTANCE.schedule(
+          () -> refreshIfRequested(resourceUrl), delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /* configs that are no longer requested are left to expire */
+  private void refreshIfRequested(String resourceUrl) {
+    if (requested.remove(resourceUrl)) {
+      refreshInBackground(resourceUrl);
+    } else {
+      LOG.debug("Not refreshing config from url {}, as it has not been requested", resourceUrl);
+    }
+  }
+
+  /* refreshes on the fetch pool, so that a slow url does not hold up refreshes of other urls */
+  private void refreshInBackground(String resourceUrl) {
+    if (!refreshing.add(resourceUrl)) {
+      return;
+    }
+    RefreshScheduler.FETCHER.execute(
+        () -> {
+          try {
+            refresh(resourceUrl);
+          } finally {
+            refreshing.remove(resourceUrl);
+          }
+        });
+  }
+
+  private void refresh(String resourceUrl) {
+    if (loading.containsKey(resourceUrl)) {
+      return;
+    }
+    try {
+      LOG.debug("Refreshing config from url {}", resourceUrl);
+      load(resourceUrl, true);
+    } catch (IOException | RuntimeException exception) {
+      LOG.warn("Failed to refresh config from url {}", resourceUrl, exception);
+    }
+  }
+
+  /*
+   * fetches and caches config, unless a fetch of the url is already in flight, or (when not
+   * refreshing) the config was cached by a fetch that completed since the cache was checked
+   */
+  private ByteBuffer load(String resourceUrl, boolean refresh) throws IOException {
+    CompletableFuture<ByteBuffer> loaded = new CompletableFuture<>();
+    CompletableFuture<ByteBuffer> inFlight = loading.putIfAbsent(resourceUrl, loaded);
+    if (nonNull(inFlight)) {
+      collapsedCount.incrementAndGet();
+      LOG.debug("Waiting for config being fetched from url {}", resourceUrl);
+      ByteBuffer stale = cache.getBuffer(resourceUrl, true);
+      return nonNull(stale) ? stale : await(resourceUrl, inFlight);
+    }
+    try {
+      ByteBuffer content = refresh ? null : cache.getBuffer(resourceUrl);
+      if (isNull(content)) {
+        content = fetchRemoteConfig(resourceUrl);
+      }
+      loaded.complete(content);
+      return content.duplicate();
+    } catch (IOException | RuntimeException exception) {
+      loaded.completeExceptionally(exception);
+      throw exception;
+    } finally {
+      loading.remove(resourceUrl, loaded);
+    }
+  }
+
+  private static ByteBuffer await(String resourceUrl, CompletableFuture<ByteBuffer> inFlight)
+      throws IOException {
+    try {
+      // each waiter gets its own position and limit
+      return inFlight.get().duplicate();
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for config from url " + resourceUrl);
+    } catch (ExecutionException failed) {
+      throw new IOException("Failed to fetch config from url " + resourceUrl, failed.getCause());
+    }
+  }
+
+  /**
+   * Fetches config from the given url. If the config is cached, the request is conditional (using
+   * the ETag and Last-Modified headers of the cached config), and the cached config is returned if
+   * the server responds that it has not been modified. Fetched configs are cached (when caching is
+   * enabled), and configs served from the cache are kept for another expiry.
+   *
+   * @param resourceUrl
+   * @return
+   * @throws IOException
+   */
+  protected ByteBuffer fetchRemoteConfig(String resourceUrl) throws IOException {
+    Validators cached = config.shouldUseCache() ? validators.get(resourceUrl) : null;
+    Request.Builder builder = new Request.Builder().url(resourceUrl);
+    if (nonNull(cached)) {
+      cached.addTo(builder);
+    }
+    Request request = builder.build();
+    ByteBuffer content;
     try (Response response = client.newCall(request).execute()) {
-      if (response.isSuccessful()) {
+      if (nonNull(cached) && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        content = renewCachedConfig(resourceUrl);
+        if (isNull(content)) {
+          // cached config was purged, so it must be downloaded again
+          validators.remove(resourceUrl, cached);
+          return fetchRemoteConfig(resourceUrl);
+        }
+        LOG.debug("Config not modified at url {}", resourceUrl);
+      } else if (response.isSuccessful()) {
         LOG.info("Successfully fetched config from url {}", request.url());
-        content = response.body().bytes();
+        byte[] fetched = response.body().bytes();
+        if (config.shouldUseCache()) {
+          updateValidators(resourceUrl, response);
+          cacheConfig(resourceUrl, fetched);
+        }
+        content = ByteBuffer.wrap(fetched);
       } else {
         throw new IOException(
             "Server returned status " + response.code() + " when fetching remote config");
       }
     } catch (IOException ioException) {
-      content = cache.get(resourceUrl, true);
+      content = renewCachedConfig(resourceUrl);
       if (isNull(content)) {
         LOG.error(
             "Failed to fetch config from url {}. Not available in cache either.",
@@ -92,10 +325,22 @@ public class RemoteConfigProvider {
     return content;
   }
 
+  private void updateValidators(String resourceUrl, Response response) {
+    Validators updated = new Validators(response.header(ETAG), response.header(LAST_MODIFIED));
+    if (updated.isEmpty()) {
+      validators.remove(resourceUrl);
+    } else {
+      validators.put(resourceUrl, updated);
+    }
+  }
+
   protected void initHttpClient() {
-    // TODO: enable HTTP Cache with given config
+    OkHttpClient.Builder builder = new OkHttpClient.Builder();
+    if (!isBlank(config.getHttpCacheDirectory())) {
+      builder.cache(new Cache(new File(config.getHttpCacheDirectory()), config.getHttpCacheSize()));
+    }
     client =
-        new OkHttpClient.Builder()
+        builder
             .connectTimeout(15, TimeUnit.SECONDS)
             .callTimeout(15, TimeUnit.SECONDS)
             .readTimeout(5, TimeUnit.SECONDS)
@@ -113,4 +358,51 @@ public class RemoteConfigProvider {
                 })
             .build();
   }
+
+  /* headers that identify a version of config, sent back to check if it has been modified */
+  private static final class Validators {
+    final String etag;
+    final String lastModified;
+
+    Validators(String etag, String lastModified) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    boolean isEmpty() {
+      return isNull(etag) && isNull(lastModified);
+    }
+
+    void addTo(Request.Builder builder) {
+      if (nonNull(etag)) {
+        builder.header("If-None-Match", etag);
+      }
+      if (nonNull(lastModified)) {
+        builder.header("If-Modified-Since", lastModified);
+      }
+    }
+  }
+
+  /**
+   * Scheduler that times refreshes of configs, and the (bounded) pool on which configs are fetched
+   * when they are refreshed in the background, created on first use.
+   */
+  private static final class RefreshScheduler {
+    static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "remote-config-refresh");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    static final ExecutorService FETCHER =
+        Executors.newFixedThreadPool(
+            4,
+            runnable -> {
+              Thread thread = new Thread(runnable, "remote-config-refresh-fetch");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
 }
@@ -0,0 +1,64 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.config;
+
+/** Settings for the in-memory cache of loaded rule sets. */
+public class RulesCacheProperties {
+
+  private int maxEntries = 50;
+
+  private int expiry = 300;
+
+  private boolean watch = false;
+
+  private RulesCacheProperties(Builder builder) {
+    this.maxEntries = builder.maxEntries;
+    this.expiry = builder.expiry;
+    this.watch = builder.watch;
+  }
+
+  /** Maximum number of rule sets held in memory. Oldest loaded rule set is evicted first. */
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /** Time (in seconds) after which a cached rule set is reloaded from its source. */
+  public int getExpiry() {
+    return expiry;
+  }
+
+  /**
+   * Reload rule sets loaded from 'file:' paths in the background when their files change, instead
+   * of after expiry. Watched rule sets do not expire.
+   */
+  public boolean isWatch() {
+    return watch;
+  }
+
+  public static final class Builder {
+    int maxEntries = 50;
+    int expiry = 300;
+    boolean watch = false;
+
+    public Builder maxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    public Builder expiry(int expiry) {
+      this.expiry = expiry;
+      return this;
+    }
+
+    public Builder watch(boolean watch) {
+      this.watch = watch;
+      return this;
+    }
+
+    public RulesCacheProperties build() {
+      return new RulesCacheProperties(this);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.config;
+
+/** Settings for loading (parsing) rule-set files. */
+public class RulesLoaderProperties {
+
+  private int parallelChunkSize = 0;
+
+  private RulesLoaderProperties(Builder builder) {
+    this.parallelChunkSize = builder.parallelChunkSize;
+  }
+
+  /**
+   * Number of features read from a rule-set file before they are converted to the rules model in
+   * parallel. Zero (default) converts features one at a time, as they are read.
+   */
+  public int getParallelChunkSize() {
+    return parallelChunkSize;
+  }
+
+  public static final class Builder {
+    int parallelChunkSize = 0;
+
+    public Builder parallelChunkSize(int parallelChunkSize) {
+      this.parallelChunkSize = parallelChunkSize;
+      return this;
+    }
+
+    public RulesLoaderProperties build() {
+      return new RulesLoaderProperties(this);
+    }
+  }
+}
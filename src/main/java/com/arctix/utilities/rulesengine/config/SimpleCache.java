@@ -6,47 +6,141 @@ package com.arctix.utilities.rulesengine.config;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
-import static java.util.concurrent.CompletableFuture.runAsync;
 
+import java.nio.ByteBuffer;
+import java.util.Comparator;
 import java.util.Map;
-import java.util.Set;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
-/** Implements a simple In-memory cache using ConcurrentHashMap. */
+/**
+ * Implements a simple In-memory cache using ConcurrentHashMap. The cache is bounded by number of
+ * entries and by total size (in bytes) of their content, evicting least recently used entries when
+ * either bound is exceeded. Entries are purged once they have been expired for longer than their
+ * max-stale time. Content can be stored off-heap (in direct buffers), so that large contents do
+ * not add to GC pressure, and read as buffers without copying.
+ */
 public class SimpleCache {
 
   /*
-   * Other potential implementations considered are:
-   * Collections.synchronizedMap - better data consistency, but entire map is locked for read & write
-   * LRUMap - implements max limits, but not thread-safe.
+   * Reads only use the ConcurrentHashMap. Writes, and the recency list and expiry queue used for
+   * eviction, are guarded by a lock. Reads reorder the recency list only when the lock is free, so
+   * that readers never wait on writers (recency is approximate under contention).
    */
   private final Map<String, CachedResource> cache = new ConcurrentHashMap<>();
 
   protected final int maxEntries;
 
+  protected final long maxBytes;
+
+  protected final boolean offHeap;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /* least recently used entry, and most recently used entry */
+  private CachedResource head;
+  private CachedResource tail;
+
+  /* entries by the time they can be purged, may include entries that have been replaced */
+  private final PriorityQueue<CachedResource> expiries =
+      new PriorityQueue<>(Comparator.comparingLong(CachedResource::purgeAt));
+
+  private long bytes;
+
   public SimpleCache() {
-    this.maxEntries = 50;
+    this(50);
   }
 
   public SimpleCache(int maxEntries) {
+    this(maxEntries, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param maxEntries - maximum number of entries cached
+   * @param maxBytes - maximum total size (in bytes) of cached content
+   */
+  public SimpleCache(int maxEntries, long maxBytes) {
+    this(maxEntries, maxBytes, false);
+  }
+
+  /**
+   * @param maxEntries - maximum number of entries cached
+   * @param maxBytes - maximum total size (in bytes) of cached content
+   * @param offHeap - whether content is copied to (and stored in) direct buffers
+   */
+  public SimpleCache(int maxEntries, long maxBytes, boolean offHeap) {
     this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.offHeap = offHeap;
   }
 
-  private AtomicLong hitCount = new AtomicLong();
-  private AtomicLong fetchCount = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong fetchCount = new AtomicLong();
+  private final AtomicLong loadCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
 
   public void add(String key, byte[] content, long expiry, long maxStale) {
     requireNonNull(content, "Content cannot be null");
-    cache.put(key, new CachedResource(content, expiry, maxStale));
-    purgeExcess();
+    if (content.length > maxBytes) {
+      // caching it would evict every other entry, and then the entry itself
+      remove(key);
+      return;
+    }
+    CachedResource resource =
+        offHeap
+            ? new CachedResource(key, toDirectBuffer(content), expiry, maxStale)
+            : new CachedResource(key, content, expiry, maxStale);
+    lock.lock();
+    try {
+      CachedResource previous = cache.put(key, resource);
+      if (!isNull(previous)) {
+        unlink(previous);
+      }
+      linkLast(resource);
+      expiries.add(resource);
+      loadCount.incrementAndGet();
+      purgeStale(resource.cached);
+      purgeExcess();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Renews the cached entry for the given key, as if its content had been added again, without
+   * copying the content.
+   *
+   * @param key
+   * @param expiry - seconds until the renewed entry expires
+   * @param maxStale - seconds for which the renewed entry is kept once expired
+   * @return whether the entry was (still) cached
+   */
+  public boolean renew(String key, long expiry, long maxStale) {
+    lock.lock();
+    try {
+      CachedResource previous = cache.get(key);
+      if (isNull(previous)) {
+        return false;
+      }
+      CachedResource resource = previous.renew(expiry, maxStale);
+      cache.put(key, resource);
+      unlink(previous);
+      linkLast(resource);
+      expiries.add(resource);
+      purgeStale(resource.cached);
+      return true;
+    } finally {
+      lock.unlock();
+    }
   }
 
   public void add(String key, byte[] content, long expiry) {
-    requireNonNull(content, "Content cannot be null");
-    cache.put(key, new CachedResource(content, expiry, 300));
-    purgeExcess();
+    add(key, content, expiry, 300);
   }
 
   public void add(String key, byte[] content) {
@@ -57,86 +151,300 @@ public class SimpleCache {
     return get(key, false);
   }
 
+  /**
+   * Returns cached content, copied from the off-heap buffer if content is stored off-heap.
+   *
+   * @param key
+   * @param acceptStale - whether expired content is returned (until it is purged)
+   * @return
+   */
   public byte[] get(String key, boolean acceptStale) {
+    CachedResource resource = lookup(key, acceptStale);
+    return isNull(resource) ? null : resource.bytes();
+  }
+
+  public ByteBuffer getBuffer(String key) {
+    return getBuffer(key, false);
+  }
+
+  /**
+   * Returns cached content as a read-only buffer, without copying it.
+   *
+   * @param key
+   * @param acceptStale - whether expired content is returned (until it is purged)
+   * @return
+   */
+  public ByteBuffer getBuffer(String key, boolean acceptStale) {
+    CachedResource resource = lookup(key, acceptStale);
+    return isNull(resource) ? null : resource.buffer();
+  }
+
+  /**
+   * Returns cached content parsed by the given parser. Content is parsed once per cached entry (and
+   * not again when the entry is renewed), rather than on every lookup.
+   *
+   * @param key
+   * @param acceptStale - whether expired content is returned (until it is purged)
+   * @param type - type of the parsed content, content parsed as another type is parsed again
+   * @param parser - parses a read-only buffer of the content
+   * @return parsed content, or null if not cached
+   */
+  public <T> T getParsed(
+      String key, boolean acceptStale, Class<T> type, Function<ByteBuffer, ? extends T> parser) {
+    CachedResource resource = lookup(key, acceptStale);
+    return isNull(resource) ? null : resource.parsed(type, parser);
+  }
+
+  private CachedResource lookup(String key, boolean acceptStale) {
     CachedResource resource = cache.get(key);
     fetchCount.incrementAndGet();
 
     if (isNull(resource)) {
+      missCount.incrementAndGet();
       return null;
     }
 
-    if (resource.hasExpired()) {
-      purgeStale(); // purge expired & stale entries
-      return acceptStale ? resource.content : null;
+    long now = System.currentTimeMillis();
+    if (resource.hasExpired(now)) {
+      missCount.incrementAndGet();
+      if (lock.tryLock()) {
+        try {
+          purgeStale(now); // purge expired & stale entries
+        } finally {
+          lock.unlock();
+        }
+      }
+      return acceptStale && !resource.canPurge(now) ? resource : null;
     }
     hitCount.incrementAndGet();
-    return resource.content;
+    if (lock.tryLock()) {
+      try {
+        // the entry may have been replaced, evicted or cleared since it was read
+        if (resource.linked && cache.get(key) == resource) {
+          unlink(resource);
+          linkLast(resource);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return resource;
+  }
+
+  private void remove(String key) {
+    lock.lock();
+    try {
+      CachedResource previous = cache.remove(key);
+      if (!isNull(previous)) {
+        unlink(previous);
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
   public void clear() {
-    cache.clear();
+    lock.lock();
+    try {
+      cache.clear();
+      expiries.clear();
+      // unlink every entry, so that readers still holding one do not link it back in
+      while (!isNull(head)) {
+        unlink(head);
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
   public long count() {
     return cache.size();
   }
 
+  /** Returns total size (in bytes) of cached content. */
+  public long byteCount() {
+    lock.lock();
+    try {
+      return bytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
   public long getHitCount() {
     return hitCount.get();
   }
 
+  /** Returns number of reads that found no entry, or an expired entry. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
   public long getFetchCount() {
     return fetchCount.get();
   }
 
+  /** Returns number of entries added to the cache. */
+  public long getLoadCount() {
+    return loadCount.get();
+  }
+
+  /** Returns number of entries removed to keep within bounds, or after going stale. */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
   private static final class CachedResource {
-    long expiry;
-    long maxStale;
-    long cached;
-    byte[] content;
+    final String key;
+    final long expiry;
+    final long maxStale;
+    final long cached;
+    final byte[] content;
+    final ByteBuffer offHeapContent;
+    final int size;
+    /* content as last parsed, shared with renewals of the entry */
+    final AtomicReference<Object> parsed;
 
-    public CachedResource(byte[] content, long expiry, long maxStale) {
+    CachedResource previous;
+    CachedResource next;
+    boolean linked;
+
+    public CachedResource(String key, byte[] content, long expiry, long maxStale) {
+      this(key, content, null, content.length, new AtomicReference<>(), expiry, maxStale);
+    }
+
+    public CachedResource(String key, ByteBuffer offHeapContent, long expiry, long maxStale) {
+      this(
+          key,
+          null,
+          offHeapContent,
+          offHeapContent.capacity(),
+          new AtomicReference<>(),
+          expiry,
+          maxStale);
+    }
+
+    private CachedResource(
+        String key,
+        byte[] content,
+        ByteBuffer offHeapContent,
+        int size,
+        AtomicReference<Object> parsed,
+        long expiry,
+        long maxStale) {
+      this.key = key;
       this.expiry = expiry;
       this.content = content;
+      this.offHeapContent = offHeapContent;
+      this.size = size;
+      this.parsed = parsed;
       this.cached = System.currentTimeMillis();
       this.maxStale = maxStale;
     }
 
-    public boolean canPurge() {
-      return (cached + (expiry * 1000) + (maxStale * 1000)) < System.currentTimeMillis();
+    CachedResource renew(long expiry, long maxStale) {
+      return new CachedResource(key, content, offHeapContent, size, parsed, expiry, maxStale);
+    }
+
+    byte[] bytes() {
+      if (isNull(offHeapContent)) {
+        return content;
+      }
+      byte[] bytes = new byte[size];
+      offHeapContent.duplicate().get(bytes);
+      return bytes;
+    }
+
+    ByteBuffer buffer() {
+      // each reader gets its own position and limit
+      return isNull(offHeapContent)
+          ? ByteBuffer.wrap(content).asReadOnlyBuffer()
+          : offHeapContent.duplicate();
     }
 
-    public boolean hasExpired() {
-      return (cached + (expiry * 1000)) < System.currentTimeMillis();
+    <T> T parsed(Class<T> type, Function<ByteBuffer, ? extends T> parser) {
+      Object value = parsed.get();
+      if (!type.isInstance(value)) {
+        value = parser.apply(buffer());
+        parsed.set(value);
+      }
+      return type.cast(value);
+    }
+
+    long purgeAt() {
+      return cached + (expiry * 1000) + (maxStale * 1000);
+    }
+
+    public boolean canPurge(long now) {
+      return purgeAt() < now;
+    }
+
+    public boolean hasExpired(long now) {
+      return (cached + (expiry * 1000)) < now;
     }
   }
 
-  private void purgeStale() {
-    runAsync(
-        () -> {
-          Set<String> keysToDelete =
-              cache.entrySet().stream()
-                  .filter(entry -> entry.getValue().canPurge())
-                  .map(Map.Entry::getKey)
-                  .collect(Collectors.toSet());
-          keysToDelete.forEach(cache::remove);
-        });
+  /* callers must hold the lock */
+  private void purgeStale(long now) {
+    while (!expiries.isEmpty() && expiries.peek().canPurge(now)) {
+      CachedResource resource = expiries.poll();
+      if (cache.remove(resource.key, resource)) {
+        unlink(resource);
+        evictionCount.incrementAndGet();
+      }
+    }
+    // drop replaced entries from the queue, once they outnumber the cached ones
+    if (expiries.size() > 2 * cache.size() + 16) {
+      expiries.clear();
+      expiries.addAll(cache.values());
+    }
   }
 
+  /* callers must hold the lock */
   private void purgeExcess() {
-    final int deleteCount = cache.size() - maxEntries;
-    if (deleteCount < 0) {
+    while (!isNull(head) && (cache.size() > maxEntries || bytes > maxBytes)) {
+      CachedResource eldest = head;
+      cache.remove(eldest.key, eldest);
+      unlink(eldest);
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  private static ByteBuffer toDirectBuffer(byte[] content) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+    buffer.put(content).flip();
+    return buffer.asReadOnlyBuffer();
+  }
+
+  private void linkLast(CachedResource resource) {
+    resource.previous = tail;
+    resource.next = null;
+    if (isNull(tail)) {
+      head = resource;
+    } else {
+      tail.next = resource;
+    }
+    tail = resource;
+    resource.linked = true;
+    bytes += resource.size;
+  }
+
+  private void unlink(CachedResource resource) {
+    if (!resource.linked) {
       return;
     }
-    runAsync(
-        () -> {
-          Set<String> toDelete =
-              cache.entrySet().stream()
-                  .sorted((o1, o2) -> o1.getValue().cached < o2.getValue().cached ? -1 : 1)
-                  .limit(deleteCount)
-                  .map(Map.Entry::getKey)
-                  .collect(Collectors.toSet());
-          toDelete.forEach(cache::remove);
-        });
+    if (isNull(resource.previous)) {
+      head = resource.next;
+    } else {
+      resource.previous.next = resource.next;
+    }
+    if (isNull(resource.next)) {
+      tail = resource.previous;
+    } else {
+      resource.next.previous = resource.previous;
+    }
+    resource.previous = resource.next = null;
+    resource.linked = false;
+    bytes -= resource.size;
   }
 }
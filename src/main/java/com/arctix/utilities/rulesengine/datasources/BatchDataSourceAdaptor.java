@@ -0,0 +1,26 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources;
+
+import com.arctix.utilities.rulesengine.datasources.models.DataFetchingContext;
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Data source adaptor that can fetch data for many users with a single call to its backend. When
+ * rules are executed for a batch of users, adaptors implementing this interface receive one call
+ * to {@link #fetchAll(List)} instead of one call to {@link #fetch(DataFetchingContext)} per user.
+ */
+public interface BatchDataSourceAdaptor extends DataSourceAdaptor {
+
+  /**
+   * Fetches data for all the given contexts.
+   *
+   * @param contexts - one context per user, each with its own parameters and user data
+   * @return data sets in the same order as the given contexts
+   */
+  CompletableFuture<List<DataSet>> fetchAll(List<DataFetchingContext> contexts);
+}
@@ -0,0 +1,178 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources;
+
+import static java.util.Objects.isNull;
+
+import com.arctix.utilities.rulesengine.datasources.models.DataFetchingContext;
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Collects concurrent requests to a batch data source adaptor and sends them to the adaptor in a
+ * single call. A batch is sent once it reaches the maximum batch size, or when the batch window
+ * started by its first request has passed, whichever happens first.
+ */
+public class DataFetchBatcher {
+
+  private final String dataSource;
+  private final BatchDataSourceAdaptor adaptor;
+  private final long batchWindow;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService scheduler;
+  private final Executor executor;
+
+  private List<PendingFetch> pending = new ArrayList<>();
+
+  /* flush of the pending batch when its batch window passes */
+  private ScheduledFuture<?> scheduledFlush;
+
+  private final AtomicLong batchCount = new AtomicLong();
+  private final AtomicLong fetchCount = new AtomicLong();
+
+  public DataFetchBatcher(
+      String dataSource,
+      BatchDataSourceAdaptor adaptor,
+      long batchWindow,
+      int maxBatchSize,
+      ScheduledExecutorService scheduler) {
+    this(dataSource, adaptor, batchWindow, maxBatchSize, scheduler, scheduler);
+  }
+
+  /**
+   * @param dataSource - name of the data source
+   * @param adaptor - adaptor to which batches are sent
+   * @param batchWindow - time (in milliseconds) for which requests are held
+   * @param maxBatchSize - maximum number of requests sent in a single batch
+   * @param scheduler - scheduler for sending batches whose batch window has passed
+   * @param executor - executor on which batches whose batch window has passed are sent
+   */
+  public DataFetchBatcher(
+      String dataSource,
+      BatchDataSourceAdaptor adaptor,
+      long batchWindow,
+      int maxBatchSize,
+      ScheduledExecutorService scheduler,
+      Executor executor) {
+    this.dataSource = dataSource;
+    this.adaptor = adaptor;
+    this.batchWindow = batchWindow;
+    this.maxBatchSize = maxBatchSize;
+    this.scheduler = scheduler;
+    this.executor = executor;
+  }
+
+  public CompletableFuture<DataSet> fetch(DataFetchingContext context) {
+    fetchCount.incrementAndGet();
+    PendingFetch fetch = new PendingFetch(context);
+    List<PendingFetch> batch = null;
+    synchronized (this) {
+      pending.add(fetch);
+      if (pending.size() >= maxBatchSize) {
+        batch = takePending();
+      } else if (pending.size() == 1) {
+        List<PendingFetch> started = pending;
+        scheduledFlush =
+            scheduler.schedule(() -> flush(started), batchWindow, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (!isNull(batch)) {
+      dispatch(batch);
+    }
+    return fetch.result;
+  }
+
+  /** Sends all pending requests to the adaptor. */
+  public void flush() {
+    List<PendingFetch> batch;
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = takePending();
+    }
+    dispatch(batch);
+  }
+
+  /* sends the given batch if it is still pending, ie. it was not sent for being full */
+  private void flush(List<PendingFetch> started) {
+    List<PendingFetch> batch;
+    synchronized (this) {
+      if (pending != started || pending.isEmpty()) {
+        return;
+      }
+      batch = takePending();
+    }
+    // do not hold up the scheduler while the adaptor prepares its call
+    executor.execute(() -> dispatch(batch));
+  }
+
+  /* callers must hold the lock */
+  private List<PendingFetch> takePending() {
+    List<PendingFetch> batch = pending;
+    pending = new ArrayList<>();
+    if (!isNull(scheduledFlush)) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return batch;
+  }
+
+  /** Number of batches sent to the adaptor. */
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /** Number of requests received for the data source. */
+  public long getFetchCount() {
+    return fetchCount.get();
+  }
+
+  private void dispatch(List<PendingFetch> batch) {
+    batchCount.incrementAndGet();
+    List<DataFetchingContext> contexts =
+        batch.stream().map(fetch -> fetch.context).collect(Collectors.toList());
+    try {
+      adaptor
+          .fetchAll(contexts)
+          .whenComplete(
+              (dataSets, throwable) -> {
+                if (isNull(throwable) && (isNull(dataSets) || dataSets.size() != batch.size())) {
+                  throwable =
+                      new IllegalStateException(
+                          "Data source "
+                              + dataSource
+                              + " did not return a data set for every context");
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                  if (isNull(throwable)) {
+                    batch.get(i).result.complete(dataSets.get(i));
+                  } else {
+                    batch.get(i).result.completeExceptionally(throwable);
+                  }
+                }
+              });
+    } catch (Exception any) {
+      batch.forEach(fetch -> fetch.result.completeExceptionally(any));
+    }
+  }
+
+  private static final class PendingFetch {
+    final DataFetchingContext context;
+    final CompletableFuture<DataSet> result = new CompletableFuture<>();
+
+    PendingFetch(DataFetchingContext context) {
+      this.context = context;
+    }
+  }
+}
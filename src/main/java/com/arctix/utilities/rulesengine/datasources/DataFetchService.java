@@ -7,14 +7,27 @@ package com.arctix.utilities.rulesengine.datasources;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
+import com.arctix.utilities.rulesengine.config.DataFetchProperties;
 import com.arctix.utilities.rulesengine.datasources.models.DataFetchResult;
 import com.arctix.utilities.rulesengine.datasources.models.DataFetchingContext;
 import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.models.FetchMode;
 import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +42,22 @@ public class DataFetchService {
 
   @Autowired ApplicationContext appContext;
 
+  @Autowired(required = false)
+  DataFetchProperties properties = new DataFetchProperties.Builder().build();
+
+  /* requests are neither shared nor cached, unless the application identifies its users */
+  @Autowired(required = false)
+  UserIdentityResolver userIdentityResolver = userData -> null;
+
+  private final Map<String, DataFetchBatcher> batchers = new ConcurrentHashMap<>();
+
+  private final Map<String, DataSetCache> caches = new ConcurrentHashMap<>();
+
+  /* requests to data sources that are in progress, shared with identical requests */
+  private final Map<FetchKey, CompletableFuture<FetchResult>> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicLong coalescedCount = new AtomicLong();
+
   private static final String ADAPTOR_SUFFIX = "-data-source-adaptor";
 
   private static final Logger LOG = LoggerFactory.getLogger(DataFetchService.class);
@@ -52,28 +81,198 @@ public class DataFetchService {
         .thenApply(this::toDataFetchResult);
   }
 
+  /**
+   * Fetches data for many users at once. Contexts of all users that need data from the same data
+   * source are handed to that data source's adaptor together, so that adaptors implementing
+   * {@link BatchDataSourceAdaptor} can serve them with a single backend call.
+   *
+   * @param parametersByDataSource - parameters to fetch for each user, grouped by data source
+   * @param userData - contextual data of each user, in the same order as parameters
+   * @return results of data fetch, in the same order as the given users
+   */
+  public CompletableFuture<List<DataFetchResult>> fetchDataInBatch(
+      final List<Map<String, List<ParameterKey>>> parametersByDataSource,
+      final List<? extends Map<?, ?>> userData) {
+
+    if (parametersByDataSource.size() != userData.size()) {
+      throw new IllegalArgumentException("Parameters must be provided for every user");
+    }
+
+    // indexes of users that need data from each data source
+    Map<String, List<Integer>> usersByDataSource = new LinkedHashMap<>();
+    for (int user = 0; user < parametersByDataSource.size(); user++) {
+      final int index = user;
+      Map<String, List<ParameterKey>> parameters = parametersByDataSource.get(user);
+      if (nonNull(parameters)) {
+        parameters
+            .keySet()
+            .forEach(
+                dataSource ->
+                    usersByDataSource
+                        .computeIfAbsent(dataSource, unused -> new ArrayList<>())
+                        .add(index));
+      }
+    }
+
+    Map<String, CompletableFuture<List<FetchResult>>> dataStream = new LinkedHashMap<>();
+    usersByDataSource.forEach(
+        (dataSource, users) ->
+            dataStream.put(
+                dataSource,
+                fetchDataFromDataSource(
+                    dataSource,
+                    users.stream()
+                        .map(
+                            user ->
+                                new DataFetchingContext(
+                                    parametersByDataSource.get(user).get(dataSource),
+                                    userData.get(user)))
+                        .collect(Collectors.toList()))));
+
+    return CompletableFuture.allOf(dataStream.values().toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            unused -> {
+              List<DataFetchResult.Builder> builders = new ArrayList<>(userData.size());
+              userData.forEach(user -> builders.add(new DataFetchResult.Builder()));
+              dataStream.forEach(
+                  (dataSource, results) -> {
+                    List<Integer> users = usersByDataSource.get(dataSource);
+                    List<FetchResult> fetchResults = results.join();
+                    for (int i = 0; i < users.size(); i++) {
+                      addFetchResult(builders.get(users.get(i)), fetchResults.get(i));
+                    }
+                  });
+              return builders.stream()
+                  .map(DataFetchResult.Builder::build)
+                  .collect(Collectors.toList());
+            });
+  }
+
   protected DataFetchResult toDataFetchResult(List<?> objects) {
     return objects.stream()
         .map(o -> (FetchResult) o)
         .collect(
-            DataFetchResult.Builder::new,
-            (builder, result) -> {
-              if (result.hasException()) {
-                builder.addException(result.getDataSourceName(), result.getException());
-              } else {
-                builder.addDataSet(result.getDataSet());
-              }
-            },
-            (dataSet, dataSet2) -> {})
+            DataFetchResult.Builder::new, this::addFetchResult, (dataSet, dataSet2) -> {})
         .build();
   }
 
+  private void addFetchResult(DataFetchResult.Builder builder, FetchResult result) {
+    if (result.hasException()) {
+      builder.addException(result.getDataSourceName(), result.getException());
+    } else {
+      builder.addDataSet(result.getDataSet());
+    }
+  }
+
   protected CompletableFuture<FetchResult> fetchDataFromDataSource(
       String dataSource, List<ParameterKey> parameterKeys, Map<?, ?> userData) {
+    Object identity =
+        properties.isCoalesceRequests() || properties.isCacheEnabled(dataSource)
+            ? resolveIdentity(userData)
+            : null;
+    DataSetCache cache = isNull(identity) ? null : getCache(dataSource);
+    if (isNull(cache) || isNull(parameterKeys)) {
+      return fetchDataShared(dataSource, identity, parameterKeys, userData);
+    }
+
+    DataSet dataSet = new DataSet();
+    List<ParameterKey> missing = cache.get(identity, parameterKeys, dataSet);
+    if (missing.isEmpty()) {
+      return CompletableFuture.completedFuture(new FetchResult(dataSource, dataSet));
+    }
+    return fetchDataShared(dataSource, identity, missing, userData)
+        .thenApply(
+            result -> {
+              if (result.hasException() || isNull(result.getDataSet())) {
+                return result;
+              }
+              cache.put(identity, missing, result.getDataSet());
+              dataSet.addAll(result.getDataSet());
+              return new FetchResult(dataSource, dataSet);
+            });
+  }
+
+  /**
+   * Returns the mode in which condition data is fetched from the given data source.
+   *
+   * @param dataSource - name of the data source
+   * @return
+   */
+  public FetchMode getFetchMode(String dataSource) {
+    return properties.getFetchMode(dataSource);
+  }
+
+  /**
+   * Returns the cache of data fetched from the given data source, which can be used to look up
+   * cache metrics or to invalidate cached data.
+   *
+   * @param dataSource - name of the data source
+   * @return cache, or null if data from the data source is not cached
+   */
+  public DataSetCache getCache(String dataSource) {
+    DataFetchProperties.CacheSettings settings = properties.getCacheSettings(dataSource);
+    if (isNull(settings)) {
+      return null;
+    }
+    return caches.computeIfAbsent(
+        dataSource, name -> new DataSetCache(settings.getExpiry(), settings.getMaxEntries()));
+  }
+
+  private CompletableFuture<FetchResult> fetchDataShared(
+      String dataSource, Object identity, List<ParameterKey> parameterKeys, Map<?, ?> userData) {
+    if (isNull(identity) || !properties.isCoalesceRequests()) {
+      return fetchDataFromAdaptor(dataSource, parameterKeys, userData);
+    }
+    FetchKey key = new FetchKey(dataSource, identity, parameterKeys);
+    CompletableFuture<FetchResult> shared = new CompletableFuture<>();
+    CompletableFuture<FetchResult> existing = inFlight.putIfAbsent(key, shared);
+    if (nonNull(existing)) {
+      coalescedCount.incrementAndGet();
+      return existing;
+    }
+    fetchDataFromAdaptor(dataSource, parameterKeys, userData)
+        .whenComplete(
+            (result, throwable) -> {
+              inFlight.remove(key, shared);
+              if (isNull(throwable)) {
+                shared.complete(result);
+              } else {
+                shared.completeExceptionally(throwable);
+              }
+            });
+    return shared;
+  }
+
+  /** Number of requests that shared the result of an identical request already in progress. */
+  public long getCoalescedFetchCount() {
+    return coalescedCount.get();
+  }
+
+  private Object resolveIdentity(Map<?, ?> userData) {
+    try {
+      return userIdentityResolver.resolve(userData);
+    } catch (Exception any) {
+      LOG.warn("Unable to resolve user identity, request will not be shared", any);
+      return null;
+    }
+  }
+
+  private CompletableFuture<FetchResult> fetchDataFromAdaptor(
+      String dataSource, List<ParameterKey> parameterKeys, Map<?, ?> userData) {
     try {
       DataSourceAdaptor dataSourceAdaptor = getDataFetcher(dataSource);
-      return dataSourceAdaptor
-          .fetch(new DataFetchingContext(parameterKeys, userData))
+      return fetchDataFromDataSource(
+          dataSource, dataSourceAdaptor, new DataFetchingContext(parameterKeys, userData));
+    } catch (Exception any) {
+      LOG.error("Exception fetching data from data source {}", dataSource, any);
+      return CompletableFuture.completedFuture(new FetchResult(dataSource, any));
+    }
+  }
+
+  private CompletableFuture<FetchResult> fetchDataFromDataSource(
+      String dataSource, DataSourceAdaptor dataSourceAdaptor, DataFetchingContext context) {
+    try {
+      return fetch(dataSource, dataSourceAdaptor, context)
           .thenApply(dataSet -> new FetchResult(dataSource, dataSet))
           .exceptionally(
               throwable -> {
@@ -86,10 +285,143 @@ public class DataFetchService {
     }
   }
 
+  /**
+   * Requests to adaptors that support batching are held for a short while and sent to the adaptor
+   * together with other concurrent requests to the same data source.
+   */
+  private CompletableFuture<DataSet> fetch(
+      String dataSource, DataSourceAdaptor dataSourceAdaptor, DataFetchingContext context) {
+    if (dataSourceAdaptor instanceof BatchDataSourceAdaptor && properties.isBatchingEnabled()) {
+      return getBatcher(dataSource, (BatchDataSourceAdaptor) dataSourceAdaptor).fetch(context);
+    }
+    return dataSourceAdaptor.fetch(context);
+  }
+
+  protected DataFetchBatcher getBatcher(String dataSource, BatchDataSourceAdaptor adaptor) {
+    return batchers.computeIfAbsent(
+        dataSource,
+        name ->
+            new DataFetchBatcher(
+                name,
+                adaptor,
+                properties.getBatchWindow(),
+                properties.getMaxBatchSize(),
+                BatchScheduler.INSTANCE,
+                BatchScheduler.DISPATCHER));
+  }
+
+  /**
+   * Fetches data for many contexts from a data source. Uses a single call for adaptors that
+   * support batching, and one call per context for all other adaptors.
+   *
+   * @param dataSource
+   * @param contexts
+   * @return results in the same order as the given contexts
+   */
+  protected CompletableFuture<List<FetchResult>> fetchDataFromDataSource(
+      String dataSource, List<DataFetchingContext> contexts) {
+    try {
+      DataSourceAdaptor dataSourceAdaptor = getDataFetcher(dataSource);
+      if (dataSourceAdaptor instanceof BatchDataSourceAdaptor) {
+        return ((BatchDataSourceAdaptor) dataSourceAdaptor)
+            .fetchAll(contexts)
+            .thenApply(dataSets -> toFetchResults(dataSource, contexts, dataSets))
+            .exceptionally(
+                throwable -> {
+                  LOG.error("Exception fetching data from data source {}", dataSource, throwable);
+                  return toFetchResults(dataSource, contexts, throwable);
+                });
+      }
+      List<CompletableFuture<FetchResult>> dataStream =
+          contexts.stream()
+              .map(context -> fetchDataFromDataSource(dataSource, dataSourceAdaptor, context))
+              .collect(Collectors.toList());
+      return CompletableFuture.allOf(dataStream.toArray(new CompletableFuture<?>[0]))
+          .thenApply(
+              unused ->
+                  dataStream.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    } catch (Exception any) {
+      LOG.error("Exception fetching data from data source {}", dataSource, any);
+      return CompletableFuture.completedFuture(toFetchResults(dataSource, contexts, any));
+    }
+  }
+
+  private List<FetchResult> toFetchResults(
+      String dataSource, List<DataFetchingContext> contexts, List<DataSet> dataSets) {
+    if (isNull(dataSets) || dataSets.size() != contexts.size()) {
+      throw new IllegalStateException(
+          "Data source " + dataSource + " did not return a data set for every context");
+    }
+    return dataSets.stream()
+        .map(dataSet -> new FetchResult(dataSource, dataSet))
+        .collect(Collectors.toList());
+  }
+
+  private List<FetchResult> toFetchResults(
+      String dataSource, List<DataFetchingContext> contexts, Throwable exception) {
+    return contexts.stream()
+        .map(context -> new FetchResult(dataSource, exception))
+        .collect(Collectors.toList());
+  }
+
   protected DataSourceAdaptor getDataFetcher(String name) {
     return (DataSourceAdaptor) appContext.getBean(name + ADAPTOR_SUFFIX);
   }
 
+  /**
+   * Scheduler for batches whose batch window has passed, and the (bounded) pool on which they are
+   * sent to adaptors, created on first use.
+   */
+  private static final class BatchScheduler {
+    static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "data-fetch-batcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    static final ExecutorService DISPATCHER =
+        Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            runnable -> {
+              Thread thread = new Thread(runnable, "data-fetch-batch-dispatcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Identifies requests that fetch the same parameters from a data source for the same user. */
+  private static final class FetchKey {
+    final String dataSource;
+    final Object identity;
+    final Set<ParameterKey> parameterKeys;
+    final int hashCode;
+
+    FetchKey(String dataSource, Object identity, List<ParameterKey> parameterKeys) {
+      this.dataSource = dataSource;
+      this.identity = identity;
+      this.parameterKeys =
+          isNull(parameterKeys) ? Collections.emptySet() : new HashSet<>(parameterKeys);
+      this.hashCode = Objects.hash(dataSource, identity, this.parameterKeys);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof FetchKey)) return false;
+      FetchKey fetchKey = (FetchKey) o;
+      return Objects.equals(dataSource, fetchKey.dataSource)
+          && Objects.equals(identity, fetchKey.identity)
+          && parameterKeys.equals(fetchKey.parameterKeys);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
   /** Represents the result of data fetch from a data source adapter. */
   private static class FetchResult {
     String dataSourceName;
@@ -0,0 +1,193 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches parameters fetched from a single data source, keyed by user identity and parameter key.
+ * Entries expire after the configured time, and the oldest entries are evicted when the cache
+ * holds more than the configured number of entries.
+ */
+public class DataSetCache {
+
+  private final Map<CacheKey, CachedParameters> cache = new ConcurrentHashMap<>();
+
+  /* cached entries in the order they were put, may include replaced or removed ones */
+  private final Queue<CachedParameters> insertionOrder = new ConcurrentLinkedQueue<>();
+
+  private final long expiry;
+
+  private final int maxEntries;
+
+  private final AtomicBoolean purging = new AtomicBoolean();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  /**
+   * @param expiry - time (in seconds) for which fetched parameters are cached
+   * @param maxEntries - maximum number of parameter keys cached, across all users
+   */
+  public DataSetCache(long expiry, int maxEntries) {
+    this.expiry = expiry;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Adds cached parameters of the given keys to the data set.
+   *
+   * @param identity - identity of the user
+   * @param parameterKeys - keys to look up
+   * @param dataSet - data set to which cached parameters are added
+   * @return keys that are not cached, or have expired
+   */
+  public List<ParameterKey> get(
+      Object identity, List<ParameterKey> parameterKeys, DataSet dataSet) {
+    List<ParameterKey> missing = new ArrayList<>();
+    for (ParameterKey parameterKey : parameterKeys) {
+      CacheKey key = new CacheKey(identity, parameterKey);
+      CachedParameters cached = cache.get(key);
+      if (isNull(cached) || cached.hasExpired()) {
+        if (!isNull(cached)) {
+          cache.remove(key, cached);
+        }
+        missCount.incrementAndGet();
+        missing.add(parameterKey);
+      } else {
+        hitCount.incrementAndGet();
+        cached.parameters.forEach(dataSet::addParameter);
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Caches the parameters of the given keys from a data set fetched for the user. Keys for which
+   * the data set has no parameters are cached as well.
+   */
+  public void put(Object identity, List<ParameterKey> parameterKeys, DataSet dataSet) {
+    for (ParameterKey parameterKey : parameterKeys) {
+      List<Parameter> parameters = dataSet.getParameters(parameterKey);
+      CachedParameters cached =
+          new CachedParameters(
+              new CacheKey(identity, parameterKey),
+              parameters.isEmpty()
+                  ? Collections.emptyList()
+                  : Collections.unmodifiableList(new ArrayList<>(parameters)));
+      cache.put(cached.key, cached);
+      insertionOrder.add(cached);
+    }
+    purgeExcess();
+  }
+
+  /** Removes all cached parameters of the given user. */
+  public void invalidate(Object identity) {
+    cache.keySet().removeIf(key -> Objects.equals(key.identity, identity));
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+    insertionOrder.clear();
+  }
+
+  public long count() {
+    return cache.size();
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /*
+   * Entries expire in the order they were put, so expired entries and the oldest entries (when the
+   * cache is full) are both removed from the head of the insertion order, without scanning.
+   */
+  private void purgeExcess() {
+    if (!purging.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      CachedParameters oldest;
+      while (nonNull(oldest = insertionOrder.peek())
+          && (cache.size() > maxEntries
+              || oldest.hasExpired()
+              || cache.get(oldest.key) != oldest)) {
+        insertionOrder.poll();
+        if (cache.remove(oldest.key, oldest) && !oldest.hasExpired()) {
+          evictionCount.incrementAndGet();
+        }
+      }
+    } finally {
+      purging.set(false);
+    }
+  }
+
+  private final class CachedParameters {
+    final CacheKey key;
+    final List<Parameter> parameters;
+    final long cached;
+
+    CachedParameters(CacheKey key, List<Parameter> parameters) {
+      this.key = key;
+      this.parameters = parameters;
+      this.cached = System.currentTimeMillis();
+    }
+
+    boolean hasExpired() {
+      return (cached + (expiry * 1000L)) < System.currentTimeMillis();
+    }
+  }
+
+  private static final class CacheKey {
+    final Object identity;
+    final ParameterKey parameterKey;
+    final int hashCode;
+
+    CacheKey(Object identity, ParameterKey parameterKey) {
+      this.identity = identity;
+      this.parameterKey = parameterKey;
+      this.hashCode = Objects.hash(identity, parameterKey);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof CacheKey)) return false;
+      CacheKey cacheKey = (CacheKey) o;
+      return Objects.equals(identity, cacheKey.identity)
+          && Objects.equals(parameterKey, cacheKey.parameterKey);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
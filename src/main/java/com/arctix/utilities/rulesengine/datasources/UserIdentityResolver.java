@@ -0,0 +1,25 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources;
+
+import java.util.Map;
+
+/**
+ * Derives the identity of a user from the contextual data passed to the rules engine. Requests to
+ * fetch the same parameters from the same data source for users with equal identities are treated
+ * as identical, and may share a single call to the data source adaptor, or be served from cache.
+ * Requests are neither shared nor cached unless a bean of this type is defined. Identities should
+ * be small immutable values (eg. user id), as they are held as keys while requests are in progress
+ * and while data is cached.
+ */
+@FunctionalInterface
+public interface UserIdentityResolver {
+
+  /**
+   * @param userData - contextual data of the user
+   * @return identity of the user, or null if requests for this user should never be shared
+   */
+  Object resolve(Map<?, ?> userData);
+}
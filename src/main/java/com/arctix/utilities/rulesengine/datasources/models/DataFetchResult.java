@@ -12,7 +12,7 @@ public class DataFetchResult {
   private Map<String, Throwable> dataSourceWithExceptions;
 
   private DataFetchResult(DataSet dataSet, Map<String, Throwable> exceptions) {
-    this.dataSet = dataSet;
+    this.dataSet = dataSet.readOnly();
     this.dataSourceWithExceptions = exceptions;
   }
 
@@ -33,6 +33,13 @@ public class DataFetchResult {
       return this;
     }
 
+    /** Adds the data set and exceptions of an earlier fetch. */
+    public Builder addResult(DataFetchResult result) {
+      tempDataSet.addAll(result.getDataSet());
+      exceptions.putAll(result.getDataSourceWithExceptions());
+      return this;
+    }
+
     public Builder addException(String dataSource, Throwable t) {
       exceptions.put(dataSource, t);
       return this;
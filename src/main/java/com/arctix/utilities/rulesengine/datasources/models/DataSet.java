@@ -4,28 +4,44 @@
  @year: 2021 */
 package com.arctix.utilities.rulesengine.datasources.models;
 
+import static java.util.Objects.isNull;
+
 import com.arctix.utilities.rulesengine.rules.models.Parameter;
 import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class DataSet {
 
-  Set<Parameter> parameterSet = new HashSet<>();
+  Set<Parameter> parameterSet;
+
+  /* index of parameters by key, in the order they were added */
+  Map<ParameterKey, List<Parameter>> parameterIndex;
 
-  public DataSet() {}
+  public DataSet() {
+    parameterSet = new HashSet<>();
+    parameterIndex = new HashMap<>();
+  }
 
   public DataSet(Collection<Parameter> parameters) {
-    parameterSet.addAll(parameters);
+    this();
+    parameters.forEach(this::addParameter);
+  }
+
+  private DataSet(DataSet source) {
+    parameterSet = source.parameterSet;
+    parameterIndex = source.parameterIndex;
   }
 
   public List<Parameter> getParameters(ParameterKey parameterKey) {
-    return parameterSet.stream()
-        .filter(parameter -> parameter.getKey().equals(parameterKey))
-        .collect(Collectors.toList());
+    List<Parameter> parameters = parameterIndex.get(parameterKey);
+    return isNull(parameters) ? Collections.emptyList() : Collections.unmodifiableList(parameters);
   }
 
   public List<Parameter> getParameters(String compositeKey) {
@@ -33,10 +49,53 @@ public class DataSet {
   }
 
   public void addParameter(Parameter parameter) {
-    parameterSet.add(parameter);
+    if (parameterSet.add(parameter)) {
+      parameterIndex.computeIfAbsent(parameter.getKey(), key -> new ArrayList<>()).add(parameter);
+    }
   }
 
   public void addAll(DataSet anotherSet) {
-    parameterSet.addAll(anotherSet.parameterSet);
+    anotherSet.parameterIndex.forEach(
+        (key, parameters) -> {
+          List<Parameter> existing = parameterIndex.get(key);
+          if (isNull(existing)) {
+            // parameters of a key not seen before cannot be duplicates
+            parameterIndex.put(key, new ArrayList<>(parameters));
+            parameterSet.addAll(parameters);
+          } else {
+            parameters.forEach(this::addParameter);
+          }
+        });
+  }
+
+  public int size() {
+    return parameterSet.size();
+  }
+
+  /**
+   * Returns a read-only view of this data set. Changes to this data set are visible through the
+   * view, but the view itself cannot be modified.
+   *
+   * @return
+   */
+  public DataSet readOnly() {
+    return this instanceof ReadOnlyDataSet ? this : new ReadOnlyDataSet(this);
+  }
+
+  private static final class ReadOnlyDataSet extends DataSet {
+
+    ReadOnlyDataSet(DataSet source) {
+      super(source);
+    }
+
+    @Override
+    public void addParameter(Parameter parameter) {
+      throw new UnsupportedOperationException("Data set is read-only");
+    }
+
+    @Override
+    public void addAll(DataSet anotherSet) {
+      throw new UnsupportedOperationException("Data set is read-only");
+    }
   }
 }
@@ -0,0 +1,384 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import com.arctix.utilities.rulesengine.config.RulesCacheProperties;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import com.arctix.utilities.rulesengine.validation.RulesValidationException;
+import com.arctix.utilities.rulesengine.validation.RulesValidator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rules loader that keeps loaded rule sets in memory, keyed by rule set name/path, so that
+ * repeated executions of the same rule set do not re-read or re-parse the rules file. Entries are
+ * reloaded after the configured expiry, and the oldest entry is evicted when the cache is full.
+ * Rule sets loaded from 'file:' paths can instead be watched, and reloaded in the background when
+ * their files change (see {@link RulesCacheProperties#isWatch()}). If the underlying loader loads
+ * compiled rules (eg. from snapshots), the compiled rules are cached, and their source rules are
+ * only built when they are loaded as such.
+ */
+@Component
+@Primary
+public class CachingRulesLoader implements CompiledRulesLoader {
+
+  private final Map<String, CachedRules> cache = new ConcurrentHashMap<>();
+
+  /* rule sets being loaded, by path, so that concurrent loads of a path share one load */
+  private final Map<String, CompletableFuture<CachedRules>> loading = new ConcurrentHashMap<>();
+
+  /* cached rule sets in the order they were loaded, may include replaced or removed ones */
+  private final Deque<CachedRules> loadOrder = new ArrayDeque<>();
+
+  private final RulesLoader delegate;
+
+  private final RulesCacheProperties properties;
+
+  private RulesCompiler rulesCompiler;
+
+  /* plans rule sets for loadCompiled if no compiler has been set */
+  private final RulesCompiler defaultCompiler = new RulesCompiler();
+
+  private RulesValidator validator;
+
+  private volatile RulesFileWatcher watcher;
+
+  private static final String FILE = "file:";
+
+  private static final String JSON = ".json";
+
+  private static final Logger LOG = LoggerFactory.getLogger(CachingRulesLoader.class);
+
+  @Autowired(required = false)
+  public CachingRulesLoader(
+      @Qualifier("rulesFileLoader") RulesLoader delegate, RulesCacheProperties properties) {
+    this.delegate = requireNonNull(delegate, "Rules loader cannot be null");
+    this.properties = requireNonNull(properties, "Cache properties cannot be null");
+  }
+
+  @Autowired(required = false)
+  public CachingRulesLoader(@Qualifier("rulesFileLoader") RulesLoader delegate) {
+    this(delegate, new RulesCacheProperties.Builder().build());
+  }
+
+  /**
+   * Compiler whose plans are used for executing rules (see {@link #loadCompiled(String)}).
+   * Reloaded rule sets are compiled before they are swapped in, so that executions do not wait for
+   * them to be compiled.
+   *
+   * @param rulesCompiler
+   */
+  @Autowired(required = false)
+  public void setRulesCompiler(RulesCompiler rulesCompiler) {
+    this.rulesCompiler = rulesCompiler;
+  }
+
+  /**
+   * Validator for rule sets reloaded from changed files. A changed rule set is only swapped in if
+   * it passes the tests in its tests file (eg. 'rules-tests.json' for 'rules.json'), when there is
+   * one.
+   *
+   * @param validator
+   */
+  @Autowired(required = false)
+  public void setValidator(@Lazy RulesValidator validator) {
+    this.validator = validator;
+  }
+
+  /**
+   * Returns the cached rule set for the given path, loading it using the underlying loader if it
+   * is not cached or has expired. If reloading an expired rule set fails, the previously loaded
+   * version continues to be served.
+   *
+   * @param path
+   * @return
+   */
+  @Override
+  public Rules load(String path) {
+    return cached(path).rules();
+  }
+
+  /**
+   * Returns the compiled rules of the cached rule set for the given path, loading the rule set as
+   * {@link #load(String)} does. Rule sets that were not loaded as compiled rules are compiled by
+   * the rules compiler, which remembers their plan.
+   *
+   * @param path
+   * @return
+   */
+  @Override
+  public CompletableFuture<CompiledRules> loadCompiled(String path) {
+    CachedRules cached = cached(path);
+    return nonNull(cached.compiled)
+        ? CompletableFuture.completedFuture(cached.compiled)
+        : (nonNull(rulesCompiler) ? rulesCompiler : defaultCompiler).plan(cached.rules);
+  }
+
+  private CachedRules cached(String path) {
+    requireNonNull(path);
+    CachedRules cached = cache.get(path);
+    if (isNull(cached) || cached.hasExpired()) {
+      cached = loadIfExpired(path);
+    }
+    return cached;
+  }
+
+  @Override
+  public Rules load(InputStream inputStream) {
+    return delegate.load(inputStream);
+  }
+
+  @Override
+  public Rules load(byte[] content) {
+    return delegate.load(content);
+  }
+
+  /** Removes the given rule set from cache, so that it is reloaded on next execution. */
+  public void invalidate(String path) {
+    cache.remove(path);
+  }
+
+  /** Removes all rule sets from cache. */
+  public void invalidateAll() {
+    cache.clear();
+    synchronized (loadOrder) {
+      loadOrder.clear();
+    }
+  }
+
+  public long count() {
+    return cache.size();
+  }
+
+  @Override
+  public void cleanUp() {
+    invalidateAll();
+    close();
+    delegate.cleanUp();
+  }
+
+  /** Stops watching rule set files for changes, if any are watched. */
+  @PreDestroy
+  public void close() {
+    synchronized (this) {
+      if (nonNull(watcher)) {
+        try {
+          watcher.close();
+        } catch (IOException ioException) {
+          LOG.warn("Unable to stop watching rules files", ioException);
+        }
+        watcher = null;
+      }
+    }
+  }
+
+  /**
+   * Reloads the given rule set from its file, validates and compiles it, and then replaces the
+   * cached version. Executions that have already loaded the previous version continue to use it.
+   * If the rule set fails to load or validate, the previous version continues to be served.
+   *
+   * @param path
+   */
+  protected void reload(String path) {
+    if (!cache.containsKey(path)) {
+      return;
+    }
+    try {
+      LOG.debug("Reloading changed rules from {}", path);
+      CachedRules changed = loadFromDelegate(path, true);
+      validate(path, changed);
+      if (nonNull(rulesCompiler) && isNull(changed.compiled)) {
+        rulesCompiler.compile(changed.rules);
+      }
+      CachedRules reloaded =
+          cache.computeIfPresent(
+              path,
+              (key, existing) ->
+                  new CachedRules(path, changed.rules, changed.compiled, existing.watched));
+      if (nonNull(reloaded)) {
+        purgeExcess(reloaded);
+      }
+      LOG.info("Reloaded rules from {}", path);
+    } catch (RuntimeException | RulesValidationException exception) {
+      LOG.warn("Failed to reload rules from {}. Using previously loaded rules.", path, exception);
+    }
+  }
+
+  private void validate(String path, CachedRules changed) throws RulesValidationException {
+    if (isNull(validator)) {
+      return;
+    }
+    String testsPath =
+        path.endsWith(JSON)
+            ? path.substring(0, path.length() - JSON.length()) + "-tests" + JSON
+            : path + "-tests";
+    if (!Files.exists(toFile(testsPath))) {
+      LOG.debug("No tests found for validating rules from {}", path);
+      return;
+    }
+    validator.validateRules(changed.rules(), delegate.load(testsPath));
+  }
+
+  /* watches the file of the rule set for changes, returning whether it is watched */
+  private boolean watch(String path) {
+    if (!properties.isWatch() || !path.startsWith(FILE)) {
+      return false;
+    }
+    try {
+      if (isNull(watcher)) {
+        synchronized (this) {
+          if (isNull(watcher)) {
+            watcher = new RulesFileWatcher(this::reload);
+          }
+        }
+      }
+      watcher.watch(path, toFile(path));
+      return true;
+    } catch (IOException | RuntimeException exception) {
+      LOG.warn("Unable to watch rules file {}. Rules will expire instead.", path, exception);
+      return false;
+    }
+  }
+
+  private static Path toFile(String path) {
+    return Paths.get(path.substring(FILE.length()));
+  }
+
+  /*
+   * Loads the rule set once, however many threads find it missing or expired. Rules are loaded
+   * outside of the cache's locks, so that a slow load does not block other paths, and the loaded
+   * rule set is cached only if the cached entry has not been replaced or invalidated meanwhile.
+   */
+  private CachedRules loadIfExpired(String path) {
+    CompletableFuture<CachedRules> loaded = new CompletableFuture<>();
+    CompletableFuture<CachedRules> inFlight = loading.putIfAbsent(path, loaded);
+    if (nonNull(inFlight)) {
+      LOG.debug("Waiting for rules being loaded from {}", path);
+      return join(inFlight);
+    }
+    try {
+      // another thread may have loaded the rules before this one started loading them
+      CachedRules existing = cache.get(path);
+      CachedRules result =
+          !isNull(existing) && !existing.hasExpired() ? existing : load(path, existing);
+      loaded.complete(result);
+      return result;
+    } catch (RuntimeException exception) {
+      loaded.completeExceptionally(exception);
+      throw exception;
+    } finally {
+      loading.remove(path, loaded);
+    }
+  }
+
+  private CachedRules load(String path, CachedRules existing) {
+    CachedRules result;
+    try {
+      // watched before loading, so that changes made while loading are not missed
+      boolean watched = watch(path);
+      LOG.debug("Loading rules from {}", path);
+      result = loadFromDelegate(path, watched);
+    } catch (RuntimeException exception) {
+      if (isNull(existing)) {
+        throw exception;
+      }
+      LOG.warn("Failed to reload rules from {}. Using previously loaded rules.", path, exception);
+      return existing;
+    }
+    boolean cached =
+        isNull(existing)
+            ? isNull(cache.putIfAbsent(path, result))
+            : cache.replace(path, existing, result);
+    if (cached) {
+      purgeExcess(result);
+    }
+    return result;
+  }
+
+  /* loads the rule set, as compiled rules if the underlying loader loads them */
+  private CachedRules loadFromDelegate(String path, boolean watched) {
+    if (delegate instanceof CompiledRulesLoader) {
+      CompiledRules compiled = join(((CompiledRulesLoader) delegate).loadCompiled(path));
+      return new CachedRules(
+          path, null, requireNonNull(compiled, "Rules cannot be null"), watched);
+    }
+    return new CachedRules(
+        path, requireNonNull(delegate.load(path), "Rules cannot be null"), null, watched);
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException failed) {
+      throw failed.getCause() instanceof RuntimeException
+          ? (RuntimeException) failed.getCause()
+          : failed;
+    }
+  }
+
+  /* records the (newly cached) rule set as the latest loaded, and evicts the oldest ones */
+  private void purgeExcess(CachedRules loaded) {
+    final int maxEntries = Math.max(properties.getMaxEntries(), 0);
+    synchronized (loadOrder) {
+      loadOrder.addLast(loaded);
+      while (cache.size() > maxEntries && !loadOrder.isEmpty()) {
+        CachedRules oldest = loadOrder.pollFirst();
+        cache.remove(oldest.path, oldest);
+      }
+      // drop replaced and removed rule sets, once they outnumber the cached ones
+      if (loadOrder.size() > 2 * cache.size() + 16) {
+        loadOrder.removeIf(entry -> cache.get(entry.path) != entry);
+      }
+    }
+  }
+
+  private final class CachedRules {
+    final String path;
+    /* null if the rule set was loaded as compiled rules */
+    final Rules rules;
+    final CompiledRules compiled;
+    final long loaded;
+    /* reloaded when its file changes, rather than on expiry */
+    final boolean watched;
+
+    CachedRules(String path, Rules rules, CompiledRules compiled, boolean watched) {
+      this.path = path;
+      this.rules = rules;
+      this.compiled = compiled;
+      this.loaded = System.currentTimeMillis();
+      this.watched = watched;
+    }
+
+    Rules rules() {
+      return nonNull(rules) ? rules : compiled.getRules();
+    }
+
+    boolean hasExpired() {
+      return !watched && (loaded + (properties.getExpiry() * 1000L)) < System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,24 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loader of rule sets that can also load them as evaluation plans, which the rules engine then
+ * evaluates without compiling the rules itself (eg. rule sets stored as compiled snapshots).
+ */
+public interface CompiledRulesLoader extends RulesLoader {
+
+  /**
+   * Loads the rule set at the given path as an evaluation plan.
+   *
+   * @param path
+   * @return future of the plan, which fails if the rules cannot be compiled
+   * @throws RuntimeException if the rule set cannot be loaded
+   */
+  CompletableFuture<CompiledRules> loadCompiled(String path);
+}
@@ -4,15 +4,20 @@
  @year: 2021 */
 package com.arctix.utilities.rulesengine.rules;
 
-import static com.arctix.utilities.rulesengine.utils.DateTimeFormat.parseIsoDateTime;
+import static com.arctix.utilities.rulesengine.utils.DateTimeFormat.MILLIS_PER_DAY;
+import static com.arctix.utilities.rulesengine.utils.DateTimeFormat.parseIsoEpochMillis;
 import static java.util.Objects.isNull;
 
 import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.utils.CaseInsensitiveSet;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 public class Matchers {
+
+  /* date assumed for a null data-value by date matchers, relative to current time */
+  private static final long NULL_DATE_OFFSET = 36_524L * MILLIS_PER_DAY;
+
   public static boolean isEqualTo(final String option, final Parameter parameter) {
     return option.equalsIgnoreCase(getValue(parameter));
   }
@@ -22,25 +27,58 @@ public class Matchers {
   }
 
   public static boolean isWithinDays(long numberOfDays, final Parameter parameter) {
-    ZonedDateTime now = ZonedDateTime.now();
-    ZonedDateTime givenDate = getValue(parameter, now.plusYears(100));
-    return Math.abs(ChronoUnit.DAYS.between(now, givenDate)) <= numberOfDays;
+    return isWithinDays(numberOfDays, parameter, System.currentTimeMillis());
+  }
+
+  /**
+   * Checks if the date in data-value is within +/- given number of days from the given time.
+   *
+   * @param numberOfDays
+   * @param parameter
+   * @param now - evaluation time, in milliseconds since epoch
+   * @return
+   */
+  public static boolean isWithinDays(long numberOfDays, final Parameter parameter, long now) {
+    long givenDate = getValue(parameter, now + NULL_DATE_OFFSET);
+    return Math.abs((givenDate - now) / MILLIS_PER_DAY) <= numberOfDays;
   }
 
   public static boolean isBeyondDays(long numberOfDays, final Parameter parameter) {
-    ZonedDateTime now = ZonedDateTime.now();
-    ZonedDateTime givenDate = getValue(parameter, now.plusYears(100));
-    return Math.abs(ChronoUnit.DAYS.between(givenDate, now)) > numberOfDays;
+    return isBeyondDays(numberOfDays, parameter, System.currentTimeMillis());
+  }
+
+  public static boolean isBeyondDays(long numberOfDays, final Parameter parameter, long now) {
+    long givenDate = getValue(parameter, now + NULL_DATE_OFFSET);
+    return Math.abs((givenDate - now) / MILLIS_PER_DAY) > numberOfDays;
   }
 
   public static boolean isOneOf(final List<String> options, final Parameter parameter) {
-    return options.stream()
-        .anyMatch(givenValue -> givenValue.equalsIgnoreCase(getValue(parameter)));
+    String value = getValue(parameter);
+    for (String givenValue : options) {
+      if (givenValue.equalsIgnoreCase(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if data-value is one of the given options, in constant time.
+   *
+   * @param options
+   * @param parameter
+   * @return
+   */
+  public static boolean isOneOf(final CaseInsensitiveSet options, final Parameter parameter) {
+    return options.contains(getValue(parameter));
   }
 
   public static boolean isNotOneOf(final List<String> options, final Parameter parameter) {
-    return options.stream()
-        .noneMatch(givenValue -> givenValue.equalsIgnoreCase(getValue(parameter)));
+    return !isOneOf(options, parameter);
+  }
+
+  public static boolean isNotOneOf(final CaseInsensitiveSet options, final Parameter parameter) {
+    return !isOneOf(options, parameter);
   }
 
   public static boolean contains(final String option, final Parameter parameter) {
@@ -52,13 +90,35 @@ public class Matchers {
   }
 
   public static boolean isAfter(final String givenDate, final Parameter parameter) {
-    ZonedDateTime dateValue = getValue(parameter, ZonedDateTime.now());
-    return dateValue.isAfter(ZonedDateTime.parse(givenDate));
+    return isAfter(ZonedDateTime.parse(givenDate), parameter);
+  }
+
+  public static boolean isAfter(final ZonedDateTime givenDate, final Parameter parameter) {
+    return isAfter(givenDate.toInstant().toEpochMilli(), parameter, System.currentTimeMillis());
+  }
+
+  /**
+   * Checks if the date in data-value is after the given date.
+   *
+   * @param givenDate - in milliseconds since epoch
+   * @param parameter
+   * @param now - evaluation time, in milliseconds since epoch
+   * @return
+   */
+  public static boolean isAfter(long givenDate, final Parameter parameter, long now) {
+    return getValue(parameter, now) > givenDate;
   }
 
   public static boolean isBefore(final String givenDate, final Parameter parameter) {
-    ZonedDateTime dateValue = getValue(parameter, ZonedDateTime.now().plusYears(100));
-    return dateValue.isBefore(ZonedDateTime.parse(givenDate));
+    return isBefore(ZonedDateTime.parse(givenDate), parameter);
+  }
+
+  public static boolean isBefore(final ZonedDateTime givenDate, final Parameter parameter) {
+    return isBefore(givenDate.toInstant().toEpochMilli(), parameter, System.currentTimeMillis());
+  }
+
+  public static boolean isBefore(long givenDate, final Parameter parameter, long now) {
+    return getValue(parameter, now + NULL_DATE_OFFSET) < givenDate;
   }
 
   private static String getValue(Parameter parameter) {
@@ -69,9 +129,9 @@ public class Matchers {
     return isNull(parameter.getDataValue()) ? valueIfNull : parameter.getDataValue();
   }
 
-  private static ZonedDateTime getValue(Parameter parameter, ZonedDateTime valueIfNull) {
+  private static long getValue(Parameter parameter, long valueIfNull) {
     return isNull(parameter.getDataValue())
         ? valueIfNull
-        : parseIsoDateTime(parameter.getDataValue());
+        : parseIsoEpochMillis(parameter.getDataValue());
   }
 }
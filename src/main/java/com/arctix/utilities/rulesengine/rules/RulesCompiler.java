@@ -0,0 +1,161 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledCondition;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledFeature;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compiles business rules into an immutable evaluation plan. Keys of conditions are parsed, the
+ * matcher of every condition is resolved and given values (dates, option lists) are parsed once,
+ * so that evaluating the rules does not need to interpret the DSL model again. Identical
+ * conditions of different features are compiled into one shared predicate, which is evaluated
+ * once per data set.
+ */
+@Component
+public class RulesCompiler {
+
+  /*
+   * Plans are remembered per Rules instance (Rules does not override equals), so that rules
+   * returned by a caching loader are compiled only once. Weak keys let the plan be collected
+   * along with the rules it was compiled from. Rules are compiled outside of the map, so that
+   * compiling a large rule set does not hold up executions of other rule sets, and rules that
+   * fail to compile are remembered along with their failure.
+   */
+  private final Map<RulesKey, CompletableFuture<CompiledRules>> compiledRules =
+      new ConcurrentHashMap<>();
+
+  private final ReferenceQueue<Rules> collectedRules = new ReferenceQueue<>();
+
+  /**
+   * Returns the evaluation plan for the given rules, compiling them if they have not been compiled
+   * by this compiler before. Rules must not be modified once they have been compiled.
+   *
+   * @param rules
+   * @return
+   * @throws RuntimeException if the rules cannot be compiled (eg. a date is not valid)
+   */
+  public CompiledRules compile(Rules rules) {
+    try {
+      return plan(rules).join();
+    } catch (CompletionException failed) {
+      throw failed.getCause() instanceof RuntimeException
+          ? (RuntimeException) failed.getCause()
+          : failed;
+    }
+  }
+
+  /**
+   * Returns the evaluation plan for the given rules as {@link #compile(Rules)} does, but as a
+   * future, which has failed if the rules cannot be compiled. If the rules are being compiled by
+   * another thread, the future completes once they have been compiled.
+   *
+   * @param rules
+   * @return
+   */
+  public CompletableFuture<CompiledRules> plan(Rules rules) {
+    requireNonNull(rules, "Rules cannot be null");
+    purgeCollected();
+    CompletableFuture<CompiledRules> plan = compiledRules.get(new RulesKey(rules, null));
+    if (nonNull(plan)) {
+      return plan;
+    }
+    CompletableFuture<CompiledRules> compiling = new CompletableFuture<>();
+    plan = compiledRules.putIfAbsent(new RulesKey(rules, collectedRules), compiling);
+    if (nonNull(plan)) {
+      return plan;
+    }
+    try {
+      compiling.complete(compileRules(rules));
+    } catch (RuntimeException exception) {
+      compiling.completeExceptionally(exception);
+    }
+    return compiling;
+  }
+
+  /**
+   * Compiles the given rules without remembering the result.
+   *
+   * @param rules
+   * @return
+   */
+  public static CompiledRules compileRules(Rules rules) {
+    requireNonNull(rules, "Rules cannot be null");
+    if (isNull(rules.getFeatures())) {
+      return new CompiledRules(Collections.emptyList(), rules.getFetchMode(), () -> rules);
+    }
+    Map<EvaluationCondition, CompiledCondition> predicates = new HashMap<>();
+    return new CompiledRules(
+        rules.getFeatures().stream()
+            .map(
+                feature ->
+                    new CompiledFeature(feature, condition -> intern(predicates, condition)))
+            .collect(Collectors.toList()),
+        rules.getFetchMode(),
+        () -> rules);
+  }
+
+  /* removes plans of rules that have been garbage collected */
+  private void purgeCollected() {
+    for (Reference<?> key = collectedRules.poll(); nonNull(key); key = collectedRules.poll()) {
+      compiledRules.remove(key);
+    }
+  }
+
+  private static CompiledCondition intern(
+      Map<EvaluationCondition, CompiledCondition> predicates, EvaluationCondition condition) {
+    CompiledCondition predicate = predicates.get(condition);
+    if (isNull(predicate)) {
+      predicate = new CompiledCondition(condition, predicates.size());
+      predicates.put(condition, predicate);
+    }
+    return predicate;
+  }
+
+  /* weak reference to rules, compared by identity */
+  private static final class RulesKey extends WeakReference<Rules> {
+    private final int hashCode;
+
+    RulesKey(Rules rules, ReferenceQueue<Rules> queue) {
+      super(rules, queue);
+      this.hashCode = System.identityHashCode(rules);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof RulesKey)) {
+        return false;
+      }
+      Rules rules = get();
+      return nonNull(rules) && rules == ((RulesKey) other).get();
+    }
+  }
+}
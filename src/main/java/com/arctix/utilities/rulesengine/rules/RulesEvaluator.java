@@ -4,159 +4,261 @@
  @year: 2021 */
 package com.arctix.utilities.rulesengine.rules;
 
-import static com.arctix.utilities.rulesengine.rules.Matchers.*;
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 
 import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledCondition;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledFeature;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.compiled.ConditionGroup;
 import com.arctix.utilities.rulesengine.rules.models.*;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class RulesEvaluator {
 
-  private Rules rules;
+  private CompiledRules rules;
   private DataSet dataSet;
   private Options options = Options.CONDITIONS_ONLY;
+  private long now;
+  /* results of shared predicates evaluated so far, indexed by predicate */
+  private byte[] predicateResults;
+
+  private static final byte NOT_EVALUATED = 0;
+  private static final byte MATCHED = 1;
+  private static final byte NOT_MATCHED = 2;
 
   private static final Logger LOG = LoggerFactory.getLogger(RulesEvaluator.class);
 
-  public RulesEvaluator(DataSet dataSet, Rules rules, Options options) {
+  public RulesEvaluator(DataSet dataSet, CompiledRules rules, Options options) {
+    this(dataSet, rules, options, Clock.systemUTC());
+  }
+
+  /**
+   * Evaluator whose date conditions are evaluated relative to the current time of the given clock.
+   * The clock is read once, so that all conditions are evaluated at the same instant.
+   *
+   * @param dataSet
+   * @param rules
+   * @param options
+   * @param clock
+   */
+  public RulesEvaluator(DataSet dataSet, CompiledRules rules, Options options, Clock clock) {
     this.dataSet = dataSet;
     this.rules = rules;
     this.options = options;
+    this.now = clock.millis();
+    this.predicateResults = new byte[isNull(rules) ? 0 : rules.getPredicateCount()];
+  }
+
+  public RulesEvaluator(DataSet dataSet, Rules rules, Options options) {
+    this(dataSet, isNull(rules) ? null : RulesCompiler.compileRules(rules), options);
   }
 
   public RulesEvaluator(DataSet dataSet, Rules rules) {
-    this.dataSet = dataSet;
-    this.rules = rules;
+    this(dataSet, rules, Options.CONDITIONS_ONLY);
   }
 
   public List<RuleEvaluationResult> evaluate() {
     requireNonNull(rules, "Rules cannot be null");
     requireNonNull(dataSet, "data set cannot be null");
-    return rules.getFeatures().stream().map(this::evaluateFeature).collect(Collectors.toList());
+    List<CompiledFeature> features = rules.getFeatures();
+    List<RuleEvaluationResult> results = new ArrayList<>(features.size());
+    for (CompiledFeature feature : features) {
+      results.add(evaluateFeature(feature));
+    }
+    return results;
   }
 
-  private RuleEvaluationResult evaluateFeature(Feature feature) {
+  /**
+   * Features whose outcome is decided by conditions on data from data sources other than the
+   * given ones (eg. a condition fails and all conditions must match), and can therefore be
+   * evaluated without fetching data from the given data sources.
+   *
+   * @param dataSources - data sources whose data is not available yet
+   * @return
+   */
+  public List<CompiledFeature> getFeaturesDecidedWithout(Set<String> dataSources) {
+    requireNonNull(rules, "Rules cannot be null");
+    requireNonNull(dataSet, "data set cannot be null");
+    List<CompiledFeature> decided = new ArrayList<>();
+    for (CompiledFeature feature : rules.getFeatures()) {
+      if (nonNull(decide(feature.getConditionGroup(options), dataSources))) {
+        decided.add(feature);
+      }
+    }
+    return decided;
+  }
+
+  private RuleEvaluationResult evaluateFeature(CompiledFeature feature) {
     return isEvaluationPositive(feature)
         ? new RuleEvaluationResult(
-            feature.getName(), toMatchResult(feature), getReturnValue(feature, true))
+            feature.getName(), toMatchResult(feature), feature.getReturnValue(true))
         : new RuleEvaluationResult(
-            feature.getName(), new ArrayList<>(), getReturnValue(feature, false));
+            feature.getName(), new ArrayList<>(), feature.getReturnValue(false));
   }
 
-  private boolean isEvaluationPositive(Feature feature) {
-    // TODO: assume all conditions must match. ie requirement.options.combination = AND
-    return getConditionsToEvaluate(feature.getRequirements()).stream()
-        .allMatch(this::evaluateCondition);
+  private boolean isEvaluationPositive(CompiledFeature feature) {
+    return isMatched(feature.getConditionGroup(options));
   }
 
-  private List<EvaluationCondition> getConditionsToEvaluate(Requirements requirements) {
-    switch (options) {
-      case PRE_CONDITIONS_ONLY:
-        return requirements.getPreConditions();
-      case POST_CONDITIONS_ONLY:
-        return requirements.getPostConditions();
-      default:
-        return requirements.getConditions();
+  /* evaluates members of the group until enough of them match, or too few are left to match */
+  private boolean isMatched(ConditionGroup group) {
+    int required = group.getRequiredMatches();
+    int remaining = group.size();
+    int matched = 0;
+    if (required <= 0) {
+      return true;
+    }
+    for (CompiledCondition condition : group.getEvaluationOrder()) {
+      matched += evaluateCondition(condition) ? 1 : 0;
+      remaining--;
+      if (matched >= required || matched + remaining < required) {
+        return matched >= required;
+      }
+    }
+    for (ConditionGroup nested : group.getGroups()) {
+      matched += isMatched(nested) ? 1 : 0;
+      remaining--;
+      if (matched >= required || matched + remaining < required) {
+        return matched >= required;
+      }
     }
+    return matched >= required;
+  }
+
+  /*
+   * Evaluates the group with conditions on data from the given data sources as unknown. Returns
+   * null if the outcome of the group depends on them.
+   */
+  private Boolean decide(ConditionGroup group, Set<String> unavailableDataSources) {
+    int required = group.getRequiredMatches();
+    int undecided = group.size();
+    int matched = 0;
+    if (required <= 0) {
+      return Boolean.TRUE;
+    }
+    for (CompiledCondition condition : group.getEvaluationOrder()) {
+      if (!unavailableDataSources.contains(condition.getKey().getDataSource())) {
+        matched += evaluateCondition(condition) ? 1 : 0;
+        undecided--;
+      }
+      if (matched >= required || matched + undecided < required) {
+        return matched >= required;
+      }
+    }
+    for (ConditionGroup nested : group.getGroups()) {
+      Boolean result = decide(nested, unavailableDataSources);
+      if (nonNull(result)) {
+        matched += result ? 1 : 0;
+        undecided--;
+      }
+      if (matched >= required || matched + undecided < required) {
+        return matched >= required;
+      }
+    }
+    return null;
   }
 
   protected boolean evaluateCondition(EvaluationCondition condition) {
+    return evaluateCondition(new CompiledCondition(condition));
+  }
+
+  /**
+   * Evaluates the given condition. Conditions shared by several features are evaluated once, and
+   * their result is reused for the other features.
+   *
+   * @param condition
+   * @return
+   */
+  protected boolean evaluateCondition(CompiledCondition condition) {
+    int index = condition.getIndex();
+    if (index < 0 || index >= predicateResults.length) {
+      return matchCondition(condition);
+    }
+    if (predicateResults[index] == NOT_EVALUATED) {
+      predicateResults[index] = matchCondition(condition) ? MATCHED : NOT_MATCHED;
+    }
+    return predicateResults[index] == MATCHED;
+  }
+
+  private boolean matchCondition(CompiledCondition condition) {
     List<Parameter> parameterValues = dataSet.getParameters(condition.getKey());
     boolean evalResult;
     if (isEmpty(parameterValues)) {
       LOG.debug(
           "No data exists for evaluating condition {}. Evaluating with null value.", condition);
       // If data value does not exist, assume null value
-      evalResult = isMatch(condition, new Parameter(condition.getKey(), null));
-    } else if (nonNull(condition.getNotEquals())
-        || nonNull(condition.getNotOneOf())
-        || nonNull(condition.getNotContains())) {
+      evalResult = condition.matches(condition.getNullParameter(), now);
+    } else if (condition.isNegative()) {
       // do ALL match for negative conditions
-      evalResult = parameterValues.stream().allMatch(parameter -> isMatch(condition, parameter));
+      evalResult = allMatch(condition, parameterValues, now);
     } else {
       // do ANY match for positive conditions
-      evalResult = parameterValues.stream().anyMatch(parameter -> isMatch(condition, parameter));
+      evalResult = anyMatch(condition, parameterValues, now);
     }
 
-    LOG.debug(
-        "Evaluation of condition {} with data {} resulted in {}",
-        condition,
-        parameterValues,
-        evalResult);
+    condition.getStatistics().record(evalResult);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(
+          "Evaluation of condition {} with data {} resulted in {}",
+          condition,
+          parameterValues,
+          evalResult);
+    }
     return evalResult;
   }
 
-  protected boolean isMatch(EvaluationCondition condition, Parameter parameter) {
-    if (nonNull(condition.getEquals())) {
-      return isEqualTo(condition.getEquals(), parameter);
-    } else if (nonNull(condition.getNotEquals())) {
-      return isNotEqualTo(condition.getNotEquals(), parameter);
-    } else if (nonNull(condition.getOneOf())) {
-      return isOneOf(condition.getOneOf(), parameter);
-    } else if (nonNull(condition.getNotOneOf())) {
-      return isNotOneOf(condition.getNotOneOf(), parameter);
-    } else if (nonNull(condition.getContains())) {
-      return contains(condition.getContains(), parameter);
-    } else if (nonNull(condition.getNotContains())) {
-      return notContains(condition.getNotContains(), parameter);
-    } else if (nonNull(condition.getAfter())) {
-      return isAfter(condition.getAfter(), parameter);
-    } else if (nonNull(condition.getBefore())) {
-      return isBefore(condition.getBefore(), parameter);
-    } else if (condition.getWithinDays() > 0) {
-      return isWithinDays(condition.getWithinDays(), parameter);
-    } else if (condition.getBeyondDays() > 0) {
-      return isBeyondDays(condition.getBeyondDays(), parameter);
-    }
-    LOG.warn("Condition not implemented: {}. Assuming negative evaluation.", condition);
-    return false;
-  }
-
-  protected List<EvaluatedParameter> toMatchResult(Feature feature) {
-    return feature.getRequirements().getConditions().stream()
-        .map(condition -> new EvaluatedParameter(condition, getMatchedParameter(condition)))
-        .collect(Collectors.toList());
+  private static boolean allMatch(
+      CompiledCondition condition, List<Parameter> parameters, long now) {
+    for (Parameter parameter : parameters) {
+      if (!condition.matches(parameter, now)) {
+        return false;
+      }
+    }
+    return true;
   }
 
-  protected List<Parameter> getMatchedParameter(EvaluationCondition condition) {
-    if (nonNull(condition.getNotEquals())
-        || nonNull(condition.getNotOneOf())
-        || nonNull(condition.getNotContains())) {
-      dataSet.getParameters(condition.getKey()).stream()
-          .filter(parameter -> !isMatch(condition, parameter))
-          .collect(Collectors.toList());
+  private static boolean anyMatch(
+      CompiledCondition condition, List<Parameter> parameters, long now) {
+    for (Parameter parameter : parameters) {
+      if (condition.matches(parameter, now)) {
+        return true;
+      }
     }
-    return dataSet.getParameters(condition.getKey()).stream()
-        .filter(parameter -> isMatch(condition, parameter))
-        .collect(Collectors.toList());
+    return false;
   }
 
-  /**
-   * Gets return value when there is a positive match
-   *
-   * @param feature
-   * @return
+  /*
+   * Conditions of the evaluated type (eg. post-conditions when evaluating post-conditions), so that
+   * a feature whose conditions of that type are satisfied always has a match, even if it has no
+   * conditions of another type.
    */
-  private String getReturnValue(Feature feature, boolean isPositive) {
-    List<Action> actions = feature.getActions();
-    final String RETURN_TYPE = "return";
-
-    if (isEmpty(actions)) {
-      return Boolean.toString(isPositive);
+  protected List<EvaluatedParameter> toMatchResult(CompiledFeature feature) {
+    List<CompiledCondition> conditions = feature.getConditions(options);
+    List<EvaluatedParameter> matchResult = new ArrayList<>(conditions.size());
+    for (CompiledCondition condition : conditions) {
+      matchResult.add(
+          new EvaluatedParameter(condition.getCondition(), getMatchedParameter(condition)));
     }
+    return matchResult;
+  }
 
-    return actions.stream()
-        .filter(action -> action.getType().equalsIgnoreCase(RETURN_TYPE))
-        .map(action -> isPositive ? action.getValue() : action.getDefaultValue())
-        .findAny()
-        .orElse(Boolean.toString(isPositive));
+  protected List<Parameter> getMatchedParameter(CompiledCondition condition) {
+    List<Parameter> matched = new ArrayList<>();
+    for (Parameter parameter : dataSet.getParameters(condition.getKey())) {
+      if (condition.matches(parameter, now)) {
+        matched.add(parameter);
+      }
+    }
+    return matched;
   }
 
   public enum Options {
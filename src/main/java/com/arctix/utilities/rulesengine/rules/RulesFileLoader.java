@@ -7,15 +7,34 @@ package com.arctix.utilities.rulesengine.rules;
 import static java.util.Objects.*;
 
 import com.arctix.utilities.rulesengine.config.RemoteConfigProvider;
+import com.arctix.utilities.rulesengine.config.RulesLoaderProperties;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
 import com.arctix.utilities.rulesengine.rules.models.Parameter;
 import com.arctix.utilities.rulesengine.rules.models.ParameterJsonDeserializer;
 import com.arctix.utilities.rulesengine.rules.models.Rules;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+/**
+ * Loads rule sets from JSON files. Files are read as a stream, one feature at a time, so that a
+ * large rule set is never held in memory as text or as a JSON tree.
+ */
 @Component
 public class RulesFileLoader implements RulesLoader {
 
@@ -23,8 +42,21 @@ public class RulesFileLoader implements RulesLoader {
   private static final String CLASSPATH = "classpath:";
   private static final String FILE = "file:";
 
+  private static final String FEATURES = "features";
+
+  /* Gson and its type adapters are thread-safe, and expensive to create */
+  private static final Gson GSON =
+      new GsonBuilder()
+          .registerTypeAdapter(Parameter.class, new ParameterJsonDeserializer())
+          .create();
+  private static final TypeAdapter<Feature> FEATURE_ADAPTER = GSON.getAdapter(Feature.class);
+  private static final TypeAdapter<Rules> RULES_ADAPTER = GSON.getAdapter(Rules.class);
+  private static final TypeAdapter<JsonElement> JSON_ADAPTER = GSON.getAdapter(JsonElement.class);
+
   private RemoteConfigProvider config;
 
+  private RulesLoaderProperties properties = new RulesLoaderProperties.Builder().build();
+
   @Autowired(required = false)
   public RulesFileLoader(RemoteConfigProvider config) {
     this.config = config;
@@ -32,6 +64,11 @@ public class RulesFileLoader implements RulesLoader {
 
   public RulesFileLoader() {}
 
+  @Autowired(required = false)
+  public void setProperties(RulesLoaderProperties properties) {
+    this.properties = requireNonNull(properties);
+  }
+
   @Override
   public Rules load(String path) {
     requireNonNull(path);
@@ -59,10 +96,17 @@ public class RulesFileLoader implements RulesLoader {
 
   @Override
   public Rules load(InputStream inputStream) {
-    GsonBuilder builder = new GsonBuilder();
-    Gson gson =
-        builder.registerTypeAdapter(Parameter.class, new ParameterJsonDeserializer()).create();
-    return gson.fromJson(new InputStreamReader(inputStream), Rules.class);
+    JsonReader reader =
+        new JsonReader(
+            new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+    reader.setLenient(true);
+    try {
+      return readRules(reader);
+    } catch (MalformedJsonException | IllegalStateException exception) {
+      throw new JsonSyntaxException(exception);
+    } catch (IOException ioException) {
+      throw new JsonIOException(ioException);
+    }
   }
 
   @Override
@@ -78,6 +122,70 @@ public class RulesFileLoader implements RulesLoader {
     }
   }
 
+  private Rules readRules(JsonReader reader) throws IOException {
+    try {
+      if (reader.peek() == JsonToken.NULL) {
+        return null;
+      }
+    } catch (EOFException emptyDocument) {
+      return null;
+    }
+    // features are streamed, all other properties are mapped by Gson as they would be otherwise
+    JsonObject properties = new JsonObject();
+    List<Feature> features = null;
+    boolean hasFeatures = false;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (FEATURES.equals(name)) {
+        features = readFeatures(reader);
+        hasFeatures = true;
+      } else {
+        properties.add(name, JSON_ADAPTER.read(reader));
+      }
+    }
+    reader.endObject();
+    Rules rules = RULES_ADAPTER.fromJsonTree(properties);
+    if (hasFeatures) {
+      rules.setFeatures(features);
+    }
+    return rules;
+  }
+
+  /*
+   * Features are converted as they are read, or if parallel chunks are enabled, read as JSON trees
+   * a chunk at a time, and converted in parallel.
+   */
+  private List<Feature> readFeatures(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    final int chunkSize = properties.getParallelChunkSize();
+    ArrayList<Feature> features = new ArrayList<>();
+    List<JsonElement> chunk = new ArrayList<>(Math.max(chunkSize, 0));
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (chunkSize <= 0) {
+        features.add(FEATURE_ADAPTER.read(reader));
+        continue;
+      }
+      chunk.add(JSON_ADAPTER.read(reader));
+      if (chunk.size() >= chunkSize) {
+        features.addAll(toFeatures(chunk));
+        chunk.clear();
+      }
+    }
+    reader.endArray();
+    features.addAll(toFeatures(chunk));
+    features.trimToSize();
+    return features;
+  }
+
+  private static List<Feature> toFeatures(List<JsonElement> chunk) {
+    return chunk.parallelStream().map(FEATURE_ADAPTER::fromJsonTree).collect(Collectors.toList());
+  }
+
   private Rules loadFromClasspath(String fileName) throws IOException {
     try (InputStream inputStream = this.getClass().getResourceAsStream(fileName)) {
       if (isNull(inputStream)) {
@@ -95,6 +203,38 @@ public class RulesFileLoader implements RulesLoader {
 
   private Rules loadFromRemoteLocation(String url) throws IOException {
     requireNonNull(config, "Remote Config Provider not initialized");
-    return load(config.getConfig(url));
+    // cached configs are parsed once, and without copying them (from off-heap) to the heap
+    return config.getConfig(url, Rules.class, buffer -> load(new ByteBufferInputStream(buffer)));
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
   }
 }
@@ -0,0 +1,157 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches rule-set files for changes, and notifies a listener (on a background thread) with the
+ * rule-set path of each changed file. A file is notified only once it has stopped changing for
+ * {@link #QUIET_PERIOD_MILLIS}, so that a file still being written is not read half-written, and
+ * the listener runs apart from the watching thread.
+ */
+final class RulesFileWatcher implements Closeable {
+
+  private final WatchService watchService;
+
+  private final Consumer<String> listener;
+
+  /* rule-set paths by (absolute) file */
+  private final Map<Path, String> files = new ConcurrentHashMap<>();
+
+  private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+  /* notifications waiting for their files to stop changing, by rule-set path */
+  private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+
+  private final ScheduledExecutorService notifier =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "rules-file-reload");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  static final long QUIET_PERIOD_MILLIS = 200;
+
+  private static final Logger LOG = LoggerFactory.getLogger(RulesFileWatcher.class);
+
+  RulesFileWatcher(Consumer<String> listener) throws IOException {
+    this.listener = listener;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    Thread thread = new Thread(this::run, "rules-file-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Watches the given file, notifying the given rule-set path when it changes.
+   *
+   * @param path - rule-set path
+   * @param file
+   * @throws IOException
+   */
+  void watch(String path, Path file) throws IOException {
+    Path absolute = file.toAbsolutePath().normalize();
+    if (nonNull(files.putIfAbsent(absolute, path))) {
+      return;
+    }
+    Path directory = absolute.getParent();
+    if (directories.add(directory)) {
+      try {
+        directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+      } catch (IOException | RuntimeException exception) {
+        // so that watching the file can be tried again
+        directories.remove(directory);
+        files.remove(absolute, path);
+        throw exception;
+      }
+      LOG.debug("Watching {} for changes to rules", directory);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    notifier.shutdownNow();
+    watchService.close();
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        Path directory = (Path) key.watchable();
+        Set<String> changed = new LinkedHashSet<>();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            // events were lost, so any file of the directory may have changed
+            files.forEach(
+                (file, path) -> {
+                  if (file.getParent().equals(directory)) {
+                    changed.add(path);
+                  }
+                });
+            continue;
+          }
+          String path = files.get(directory.resolve((Path) event.context()));
+          if (nonNull(path)) {
+            changed.add(path);
+          }
+        }
+        key.reset();
+        changed.forEach(this::scheduleNotify);
+      }
+    } catch (ClosedWatchServiceException
+        | InterruptedException
+        | RejectedExecutionException stopped) {
+      LOG.debug("Stopped watching rules files");
+    }
+  }
+
+  /* (re)starts the quiet period of the file, notifying it only when no more changes follow */
+  private void scheduleNotify(String path) {
+    pending.compute(
+        path,
+        (key, scheduled) -> {
+          if (nonNull(scheduled)) {
+            scheduled.cancel(false);
+          }
+          return notifier.schedule(() -> notifyChanged(key), QUIET_PERIOD_MILLIS, MILLISECONDS);
+        });
+  }
+
+  private void notifyChanged(String path) {
+    pending.remove(path);
+    try {
+      listener.accept(path);
+    } catch (RuntimeException exception) {
+      LOG.warn("Failed to handle change of rules file {}", path, exception);
+    }
+  }
+}
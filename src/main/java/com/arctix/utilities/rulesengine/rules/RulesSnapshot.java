@@ -0,0 +1,829 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static java.util.Collections.emptyList;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.Objects.requireNonNull;
+
+import com.arctix.utilities.rulesengine.rules.compiled.Combination;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledCondition;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledFeature;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.compiled.ConditionGroup;
+import com.arctix.utilities.rulesengine.rules.compiled.Operator;
+import com.arctix.utilities.rulesengine.rules.compiled.Operators;
+import com.arctix.utilities.rulesengine.rules.models.Action;
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
+import com.arctix.utilities.rulesengine.rules.models.FetchMode;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import com.arctix.utilities.rulesengine.rules.models.RequirementMatchingOptions;
+import com.arctix.utilities.rulesengine.rules.models.Requirements;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a compiled rule set, which can be loaded without parsing JSON or compiling
+ * the rules (see {@link SnapshotRulesLoader}). A snapshot starts with a header (magic number,
+ * format version and the size of each table), followed by tables of fixed-width records:
+ *
+ * <ul>
+ *   <li>strings - every distinct string of the rule set, stored once, as offsets into UTF-8 bytes
+ *   <li>string lists - values of oneOf/notOneOf conditions, as ranges of string references
+ *   <li>conditions - one record per condition; conditions of a list (and of a group) are stored
+ *       next to each other, so that lists are referenced by their first record and size
+ *   <li>actions, parameters (test data, with pre-parsed keys)
+ *   <li>predicates - one record per shared condition of the compiled rules, with its key split
+ *       into data source and name, its operator resolved and its operand parsed (eg. dates of
+ *       after/before conditions as epoch millis)
+ *   <li>groups and their members - compiled condition groups, with their combination and number of
+ *       required matches resolved, and members (predicates or nested groups) in declared order;
+ *       nested groups are stored before the groups containing them
+ *   <li>features - source fields, condition groups and resolved return values
+ * </ul>
+ *
+ * <p>Strings are referenced by their index in the string table, and missing values (null strings
+ * or lists) by {@value #NONE}. Compiled rules are built directly from the predicate, group and
+ * feature tables, decoding only the strings they use. The source model (conditions, actions and
+ * test data) is only built when it is first needed (eg. for reporting evaluated conditions).
+ * Compile a rules JSON file into a snapshot with:
+ *
+ * <pre>
+ * java -cp ... com.arctix.utilities.rulesengine.rules.RulesSnapshot rules.json rules.snapshot
+ * </pre>
+ */
+public final class RulesSnapshot {
+
+  /* 'RULS' */
+  static final int MAGIC = 0x52554C53;
+  static final int VERSION = 2;
+
+  static final int NONE = -1;
+
+  private static final int HAS_OPTIONS = 1;
+  private static final int HAS_REQUIREMENTS = 2;
+
+  private static final int PREDICATE_MEMBER = 0;
+  private static final int GROUP_MEMBER = 1;
+
+  private RulesSnapshot() {}
+
+  /**
+   * Compiles a rules JSON file into a snapshot file.
+   *
+   * @param args - path of the rules file (as accepted by {@link RulesFileLoader#load(String)}) and
+   *     path of the snapshot file to write
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: RulesSnapshot <rules path> <snapshot file>");
+      System.exit(1);
+    }
+    Rules rules = new RulesFileLoader().load(args[0]);
+    try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+      write(rules, outputStream);
+    }
+  }
+
+  /**
+   * Compiles the given rules, and writes a snapshot of them.
+   *
+   * @param rules
+   * @param outputStream
+   * @throws IOException
+   * @throws RuntimeException if the rules cannot be compiled (eg. a date is not valid)
+   */
+  public static void write(Rules rules, OutputStream outputStream) throws IOException {
+    requireNonNull(rules, "Rules cannot be null");
+    new Writer(rules).write(new DataOutputStream(outputStream));
+  }
+
+  /**
+   * Snapshot of the given rules, as bytes.
+   *
+   * @param rules
+   * @return
+   */
+  public static byte[] toBytes(Rules rules) {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try {
+      write(rules, outputStream);
+    } catch (IOException ioException) {
+      throw new RuntimeException(ioException);
+    }
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Reads rules from the given snapshot, starting at the current position of the buffer.
+   *
+   * @param buffer
+   * @return
+   */
+  public static Rules read(ByteBuffer buffer) {
+    requireNonNull(buffer, "Snapshot cannot be null");
+    return new Reader(buffer).rules();
+  }
+
+  /**
+   * Reads compiled rules from the given snapshot, starting at the current position of the buffer.
+   * The returned rules keep a reference to the buffer, from which their source model is built if
+   * it is needed.
+   *
+   * @param buffer
+   * @return
+   */
+  public static CompiledRules readCompiled(ByteBuffer buffer) {
+    requireNonNull(buffer, "Snapshot cannot be null");
+    return new Reader(buffer).compiledRules();
+  }
+
+  /* flattens the rules and their compiled plan into tables, while collecting distinct strings */
+  private static final class Writer {
+    private final Rules rules;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final List<String> stringTable = new ArrayList<>();
+    private final IntList listItems = new IntList();
+    private final IntList lists = new IntList();
+    private final List<ConditionRecord> conditions = new ArrayList<>();
+    private final IntList actions = new IntList();
+    private final IntList parameters = new IntList();
+    private final IntList groups = new IntList();
+    private final IntList members = new IntList();
+    private final IntList features = new IntList();
+    /* records of the conditions of the rules, by (the identity of) their condition */
+    private final Map<EvaluationCondition, Integer> conditionRecords = new IdentityHashMap<>();
+    private CompiledCondition[] predicates = new CompiledCondition[0];
+
+    Writer(Rules rules) {
+      this.rules = rules;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      int fetchMode = string(isNull(rules.getFetchMode()) ? null : rules.getFetchMode().name());
+      if (!isNull(rules.getFeatures())) {
+        CompiledRules compiled = RulesCompiler.compileRules(rules);
+        predicates = new CompiledCondition[compiled.getPredicateCount()];
+        for (int i = 0; i < rules.getFeatures().size(); i++) {
+          addFeature(rules.getFeatures().get(i), compiled.getFeatures().get(i));
+        }
+      }
+      List<PredicateRecord> predicateRecords = new ArrayList<>(predicates.length);
+      for (CompiledCondition predicate : predicates) {
+        predicateRecords.add(toRecord(predicate));
+      }
+      byte[][] encoded = new byte[stringTable.size()][];
+      int offset = 0;
+      for (int i = 0; i < encoded.length; i++) {
+        encoded[i] = stringTable.get(i).getBytes(StandardCharsets.UTF_8);
+        offset += encoded[i].length;
+      }
+
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(isNull(rules.getFeatures()) ? NONE : features.size() / Records.FEATURE);
+      out.writeInt(fetchMode);
+      out.writeInt(encoded.length);
+      out.writeInt(offset);
+      out.writeInt(listItems.size());
+      out.writeInt(lists.size() / Records.LIST);
+      out.writeInt(conditions.size());
+      out.writeInt(actions.size() / Records.ACTION);
+      out.writeInt(parameters.size() / Records.PARAMETER);
+      out.writeInt(predicateRecords.size());
+      out.writeInt(groups.size() / Records.GROUP);
+      out.writeInt(members.size() / Records.MEMBER);
+
+      offset = 0;
+      for (byte[] bytes : encoded) {
+        out.writeInt(offset);
+        offset += bytes.length;
+      }
+      for (byte[] bytes : encoded) {
+        out.write(bytes);
+      }
+      listItems.write(out);
+      lists.write(out);
+      for (ConditionRecord condition : conditions) {
+        condition.write(out);
+      }
+      actions.write(out);
+      parameters.write(out);
+      for (PredicateRecord predicate : predicateRecords) {
+        predicate.write(out);
+      }
+      groups.write(out);
+      members.write(out);
+      features.write(out);
+      out.flush();
+    }
+
+    private void addFeature(Feature feature, CompiledFeature compiled) {
+      Requirements requirements = feature.getRequirements();
+      RequirementMatchingOptions options = isNull(requirements) ? null : requirements.getOptions();
+      int flags =
+          (isNull(requirements) ? 0 : HAS_REQUIREMENTS) | (isNull(options) ? 0 : HAS_OPTIONS);
+      int[] pre = addConditions(isNull(requirements) ? null : requirements.getPreConditions());
+      int[] main = addConditions(isNull(requirements) ? null : requirements.getConditions());
+      int[] post = addConditions(isNull(requirements) ? null : requirements.getPostConditions());
+      int[] featureActions = addActions(feature.getActions());
+      int[] testData = addParameters(feature.getTestData());
+      int preGroup =
+          addGroup(
+              requirements.getPreConditions(),
+              compiled.getConditionGroup(RulesEvaluator.Options.PRE_CONDITIONS_ONLY));
+      int mainGroup =
+          addGroup(
+              requirements.getConditions(),
+              compiled.getConditionGroup(RulesEvaluator.Options.CONDITIONS_ONLY));
+      int postGroup =
+          addGroup(
+              requirements.getPostConditions(),
+              compiled.getConditionGroup(RulesEvaluator.Options.POST_CONDITIONS_ONLY));
+      features.add(
+          string(feature.getName()),
+          flags,
+          isNull(options) ? NONE : string(options.getCombination()),
+          isNull(options) ? 0 : options.getMinimum());
+      features.add(pre).add(main).add(post).add(featureActions).add(testData);
+      features.add(
+          preGroup,
+          mainGroup,
+          postGroup,
+          string(compiled.getReturnValue(true)),
+          string(compiled.getReturnValue(false)));
+    }
+
+    /* reserves consecutive records for the given conditions, before adding their children */
+    private int[] addConditions(List<EvaluationCondition> list) {
+      if (isNull(list)) {
+        return new int[] {NONE, NONE};
+      }
+      int start = conditions.size();
+      list.forEach(unused -> conditions.add(null));
+      for (int i = 0; i < list.size(); i++) {
+        conditionRecords.put(list.get(i), start + i);
+        conditions.set(start + i, toRecord(list.get(i)));
+      }
+      return new int[] {start, list.size()};
+    }
+
+    private ConditionRecord toRecord(EvaluationCondition condition) {
+      ConditionRecord record = new ConditionRecord();
+      RequirementMatchingOptions options = condition.getOptions();
+      record.fields[0] = string(condition.getType());
+      record.fields[1] = string(condition.getKey());
+      record.fields[2] = string(condition.getEquals());
+      record.fields[3] = string(condition.getNotEquals());
+      record.fields[4] = string(condition.getContains());
+      record.fields[5] = string(condition.getNotContains());
+      record.fields[6] = string(condition.getAfter());
+      record.fields[7] = string(condition.getBefore());
+      record.fields[8] = stringList(condition.getOneOf());
+      record.fields[9] = stringList(condition.getNotOneOf());
+      record.fields[10] = isNull(options) ? 0 : HAS_OPTIONS;
+      record.fields[11] = isNull(options) ? NONE : string(options.getCombination());
+      record.fields[12] = isNull(options) ? 0 : options.getMinimum();
+      int[] children = addConditions(condition.getConditions());
+      record.fields[13] = children[0];
+      record.fields[14] = children[1];
+      record.withinDays = condition.getWithinDays();
+      record.beyondDays = condition.getBeyondDays();
+      return record;
+    }
+
+    /*
+     * adds the compiled group of the given conditions after its nested groups, and returns its
+     * index; members of compiled groups are in the order their conditions are declared
+     */
+    private int addGroup(List<EvaluationCondition> list, ConditionGroup group) {
+      IntList groupMembers = new IntList();
+      int conditionCount = 0;
+      int groupCount = 0;
+      List<EvaluationCondition> declared = isNull(list) ? emptyList() : list;
+      for (EvaluationCondition condition : declared) {
+        if (condition.isGroup()) {
+          int nested = addGroup(condition.getConditions(), group.getGroups().get(groupCount++));
+          groupMembers.add(GROUP_MEMBER, nested);
+        } else {
+          CompiledCondition predicate = group.getConditions().get(conditionCount++);
+          predicates[predicate.getIndex()] = predicate;
+          groupMembers.add(PREDICATE_MEMBER, predicate.getIndex());
+        }
+      }
+      int index = groups.size() / Records.GROUP;
+      groups.add(
+          group.getCombination().ordinal(),
+          group.getRequiredMatches(),
+          members.size() / Records.MEMBER,
+          groupMembers.size() / Records.MEMBER);
+      members.add(groupMembers);
+      return index;
+    }
+
+    private PredicateRecord toRecord(CompiledCondition predicate) {
+      EvaluationCondition condition = predicate.getCondition();
+      Operators.Kind kind = Operators.kindOf(condition);
+      PredicateRecord record = new PredicateRecord();
+      record.fields[0] = string(predicate.getKey().getDataSource());
+      record.fields[1] = string(predicate.getKey().getName());
+      record.fields[2] = kind.ordinal();
+      record.fields[3] = NONE;
+      record.fields[4] = NONE;
+      record.fields[5] = conditionRecords.get(condition);
+      switch (kind) {
+        case EQUAL_TO:
+          record.fields[3] = string(condition.getEquals());
+          break;
+        case NOT_EQUAL_TO:
+          record.fields[3] = string(condition.getNotEquals());
+          break;
+        case CONTAINS:
+          record.fields[3] = string(condition.getContains());
+          break;
+        case NOT_CONTAINS:
+          record.fields[3] = string(condition.getNotContains());
+          break;
+        case ONE_OF:
+          record.fields[4] = stringList(condition.getOneOf());
+          break;
+        case NOT_ONE_OF:
+          record.fields[4] = stringList(condition.getNotOneOf());
+          break;
+        case AFTER:
+          record.number = Operators.toEpochMillis(condition.getAfter());
+          break;
+        case BEFORE:
+          record.number = Operators.toEpochMillis(condition.getBefore());
+          break;
+        case WITHIN_DAYS:
+          record.number = condition.getWithinDays();
+          break;
+        case BEYOND_DAYS:
+          record.number = condition.getBeyondDays();
+          break;
+        default:
+      }
+      return record;
+    }
+
+    private int[] addActions(List<Action> list) {
+      if (isNull(list)) {
+        return new int[] {NONE, NONE};
+      }
+      int start = actions.size() / Records.ACTION;
+      for (Action action : list) {
+        actions.add(
+            string(action.getType()),
+            string(action.getKey()),
+            string(action.getValue()),
+            string(action.getDefaultValue()));
+      }
+      return new int[] {start, list.size()};
+    }
+
+    private int[] addParameters(List<Parameter> list) {
+      if (isNull(list)) {
+        return new int[] {NONE, NONE};
+      }
+      int start = parameters.size() / Records.PARAMETER;
+      for (Parameter parameter : list) {
+        ParameterKey key = parameter.getKey();
+        parameters.add(
+            isNull(key) ? NONE : string(key.getDataSource()),
+            isNull(key) ? NONE : string(key.getName()),
+            string(parameter.getDataValue()),
+            string(parameter.getDataId()));
+      }
+      return new int[] {start, list.size()};
+    }
+
+    private int stringList(List<String> values) {
+      if (isNull(values)) {
+        return NONE;
+      }
+      int index = lists.size() / Records.LIST;
+      lists.add(listItems.size(), values.size());
+      values.forEach(value -> listItems.add(string(value)));
+      return index;
+    }
+
+    private int string(String value) {
+      if (isNull(value)) {
+        return NONE;
+      }
+      Integer index = strings.get(value);
+      if (isNull(index)) {
+        index = stringTable.size();
+        strings.put(value, index);
+        stringTable.add(value);
+      }
+      return index;
+    }
+  }
+
+  /*
+   * Reads the tables of a snapshot in place. Strings are decoded when they are first read, and the
+   * source model is built (once) when it is first needed, so that loading compiled rules only
+   * decodes the strings they use. Building the model is synchronized, as compiled rules build it
+   * on demand from any thread.
+   */
+  private static final class Reader {
+    private final int featureCount;
+    private final int fetchMode;
+    private final int stringCount;
+    private final int stringByteCount;
+    private final ByteBuffer stringOffsets;
+    private final ByteBuffer stringBytes;
+    private final ByteBuffer listItems;
+    private final ByteBuffer lists;
+    private final ByteBuffer conditions;
+    private final ByteBuffer actions;
+    private final ByteBuffer parameters;
+    private final ByteBuffer predicates;
+    private final ByteBuffer groups;
+    private final ByteBuffer members;
+    private final ByteBuffer features;
+    private final int predicateCount;
+    private final int groupCount;
+    private final String[] strings;
+    private final EvaluationCondition[] conditionModels;
+    private final Feature[] featureModels;
+    private Rules rules;
+
+    Reader(ByteBuffer buffer) {
+      if (buffer.remaining() < Records.HEADER * Integer.BYTES || buffer.getInt() != MAGIC) {
+        throw new RuntimeException("Not a rules snapshot");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new RuntimeException("Unsupported rules snapshot version: " + version);
+      }
+      featureCount = buffer.getInt();
+      fetchMode = buffer.getInt();
+      stringCount = buffer.getInt();
+      stringByteCount = buffer.getInt();
+      int listItemCount = buffer.getInt();
+      int listCount = buffer.getInt();
+      int conditionCount = buffer.getInt();
+      int actionCount = buffer.getInt();
+      int parameterCount = buffer.getInt();
+      predicateCount = buffer.getInt();
+      groupCount = buffer.getInt();
+      int memberCount = buffer.getInt();
+
+      stringOffsets = table(buffer, stringCount * Integer.BYTES);
+      stringBytes = table(buffer, stringByteCount);
+      listItems = table(buffer, listItemCount * Integer.BYTES);
+      lists = table(buffer, listCount * Records.LIST * Integer.BYTES);
+      conditions = table(buffer, conditionCount * Records.CONDITION_BYTES);
+      actions = table(buffer, actionCount * Records.ACTION * Integer.BYTES);
+      parameters = table(buffer, parameterCount * Records.PARAMETER * Integer.BYTES);
+      predicates = table(buffer, predicateCount * Records.PREDICATE_BYTES);
+      groups = table(buffer, groupCount * Records.GROUP * Integer.BYTES);
+      members = table(buffer, memberCount * Records.MEMBER * Integer.BYTES);
+      features = table(buffer, Math.max(featureCount, 0) * Records.FEATURE * Integer.BYTES);
+      strings = new String[stringCount];
+      conditionModels = new EvaluationCondition[conditionCount];
+      featureModels = new Feature[Math.max(featureCount, 0)];
+    }
+
+    CompiledRules compiledRules() {
+      CompiledCondition[] compiledPredicates = new CompiledCondition[predicateCount];
+      for (int i = 0; i < predicateCount; i++) {
+        compiledPredicates[i] = predicate(i);
+      }
+      ConditionGroup[] compiledGroups = new ConditionGroup[groupCount];
+      for (int i = 0; i < groupCount; i++) {
+        compiledGroups[i] = group(i, compiledPredicates, compiledGroups);
+      }
+      List<CompiledFeature> compiledFeatures = new ArrayList<>(featureModels.length);
+      for (int i = 0; i < featureModels.length; i++) {
+        final int feature = i;
+        compiledFeatures.add(
+            new CompiledFeature(
+                string(intAt(features, Records.FEATURE, i, 0)),
+                () -> feature(feature),
+                compiledGroups[intAt(features, Records.FEATURE, i, 14)],
+                compiledGroups[intAt(features, Records.FEATURE, i, 15)],
+                compiledGroups[intAt(features, Records.FEATURE, i, 16)],
+                string(intAt(features, Records.FEATURE, i, 17)),
+                string(intAt(features, Records.FEATURE, i, 18))));
+      }
+      return new CompiledRules(compiledFeatures, fetchMode(), this::rules);
+    }
+
+    private CompiledCondition predicate(int index) {
+      int position = index * Records.PREDICATE_BYTES;
+      ParameterKey key =
+          new ParameterKey(
+              string(predicates.getInt(position)),
+              string(predicates.getInt(position + Integer.BYTES)));
+      Operator operator =
+          Operators.of(
+              Operators.Kind.values()[predicates.getInt(position + 2 * Integer.BYTES)],
+              string(predicates.getInt(position + 3 * Integer.BYTES)),
+              stringList(predicates.getInt(position + 4 * Integer.BYTES)),
+              predicates.getLong(position + Records.PREDICATE * Integer.BYTES));
+      int condition = predicates.getInt(position + 5 * Integer.BYTES);
+      return new CompiledCondition(key, operator, index, () -> condition(condition));
+    }
+
+    private ConditionGroup group(
+        int index, CompiledCondition[] compiledPredicates, ConditionGroup[] compiledGroups) {
+      int start = intAt(groups, Records.GROUP, index, 2);
+      int count = intAt(groups, Records.GROUP, index, 3);
+      List<CompiledCondition> groupConditions = new ArrayList<>();
+      List<ConditionGroup> nestedGroups = new ArrayList<>();
+      List<CompiledCondition> allConditions = new ArrayList<>();
+      for (int member = start; member < start + count; member++) {
+        int memberIndex = intAt(members, Records.MEMBER, member, 1);
+        if (intAt(members, Records.MEMBER, member, 0) == GROUP_MEMBER) {
+          ConditionGroup nested = compiledGroups[memberIndex];
+          nestedGroups.add(nested);
+          allConditions.addAll(nested.getAllConditions());
+        } else {
+          CompiledCondition predicate = compiledPredicates[memberIndex];
+          groupConditions.add(predicate);
+          allConditions.add(predicate);
+        }
+      }
+      return new ConditionGroup(
+          Combination.values()[intAt(groups, Records.GROUP, index, 0)],
+          intAt(groups, Records.GROUP, index, 1),
+          groupConditions,
+          nestedGroups,
+          allConditions);
+    }
+
+    synchronized Rules rules() {
+      if (isNull(rules)) {
+        Rules model = new Rules();
+        model.setFetchMode(fetchMode());
+        if (featureCount != NONE) {
+          List<Feature> featureList = new ArrayList<>(featureCount);
+          for (int i = 0; i < featureCount; i++) {
+            featureList.add(feature(i));
+          }
+          model.setFeatures(featureList);
+        }
+        rules = model;
+      }
+      return rules;
+    }
+
+    private FetchMode fetchMode() {
+      return fetchMode == NONE ? null : FetchMode.valueOf(string(fetchMode));
+    }
+
+    synchronized Feature feature(int index) {
+      if (nonNull(featureModels[index])) {
+        return featureModels[index];
+      }
+      Feature feature = new Feature();
+      feature.setName(string(featureField(index, 0)));
+      int flags = featureField(index, 1);
+      if ((flags & HAS_REQUIREMENTS) != 0) {
+        Requirements requirements = new Requirements();
+        if ((flags & HAS_OPTIONS) != 0) {
+          requirements.setOptions(
+              new RequirementMatchingOptions(
+                  string(featureField(index, 2)), featureField(index, 3)));
+        }
+        requirements.setPreConditions(
+            conditions(featureField(index, 4), featureField(index, 5)));
+        requirements.setConditions(conditions(featureField(index, 6), featureField(index, 7)));
+        requirements.setPostConditions(
+            conditions(featureField(index, 8), featureField(index, 9)));
+        feature.setRequirements(requirements);
+      }
+      feature.setActions(actions(featureField(index, 10), featureField(index, 11)));
+      feature.setTestData(parameters(featureField(index, 12), featureField(index, 13)));
+      featureModels[index] = feature;
+      return feature;
+    }
+
+    private int featureField(int index, int field) {
+      return intAt(features, Records.FEATURE, index, field);
+    }
+
+    private List<EvaluationCondition> conditions(int start, int count) {
+      if (count == NONE) {
+        return null;
+      }
+      List<EvaluationCondition> list = new ArrayList<>(count);
+      for (int i = start; i < start + count; i++) {
+        list.add(condition(i));
+      }
+      return list;
+    }
+
+    synchronized EvaluationCondition condition(int index) {
+      if (nonNull(conditionModels[index])) {
+        return conditionModels[index];
+      }
+      int position = index * Records.CONDITION_BYTES;
+      int[] fields = new int[Records.CONDITION];
+      for (int i = 0; i < fields.length; i++) {
+        fields[i] = conditions.getInt(position + i * Integer.BYTES);
+      }
+      EvaluationCondition condition = new EvaluationCondition();
+      condition.setType(string(fields[0]));
+      condition.setKey(string(fields[1]));
+      condition.setEquals(string(fields[2]));
+      condition.setNotEquals(string(fields[3]));
+      condition.setContains(string(fields[4]));
+      condition.setNotContains(string(fields[5]));
+      condition.setAfter(string(fields[6]));
+      condition.setBefore(string(fields[7]));
+      condition.setOneOf(stringList(fields[8]));
+      condition.setNotOneOf(stringList(fields[9]));
+      if ((fields[10] & HAS_OPTIONS) != 0) {
+        condition.setOptions(new RequirementMatchingOptions(string(fields[11]), fields[12]));
+      }
+      condition.setConditions(conditions(fields[13], fields[14]));
+      int longs = position + Records.CONDITION * Integer.BYTES;
+      condition.setWithinDays(conditions.getLong(longs));
+      condition.setBeyondDays(conditions.getLong(longs + Long.BYTES));
+      conditionModels[index] = condition;
+      return condition;
+    }
+
+    private List<Action> actions(int start, int count) {
+      if (count == NONE) {
+        return null;
+      }
+      List<Action> list = new ArrayList<>(count);
+      for (int i = start; i < start + count; i++) {
+        Action action =
+            new Action(
+                string(intAt(actions, Records.ACTION, i, 0)),
+                string(intAt(actions, Records.ACTION, i, 1)),
+                string(intAt(actions, Records.ACTION, i, 2)));
+        action.setDefaultValue(string(intAt(actions, Records.ACTION, i, 3)));
+        list.add(action);
+      }
+      return list;
+    }
+
+    private List<Parameter> parameters(int start, int count) {
+      if (count == NONE) {
+        return null;
+      }
+      List<Parameter> list = new ArrayList<>(count);
+      for (int i = start; i < start + count; i++) {
+        Parameter parameter = new Parameter();
+        int dataSource = intAt(parameters, Records.PARAMETER, i, 0);
+        if (dataSource != NONE) {
+          parameter.setKey(
+              new ParameterKey(
+                  string(dataSource), string(intAt(parameters, Records.PARAMETER, i, 1))));
+        }
+        parameter.setDataValue(string(intAt(parameters, Records.PARAMETER, i, 2)));
+        parameter.setDataId(string(intAt(parameters, Records.PARAMETER, i, 3)));
+        list.add(parameter);
+      }
+      return list;
+    }
+
+    private List<String> stringList(int index) {
+      if (index == NONE) {
+        return null;
+      }
+      int start = intAt(lists, Records.LIST, index, 0);
+      int count = intAt(lists, Records.LIST, index, 1);
+      List<String> values = new ArrayList<>(count);
+      for (int i = start; i < start + count; i++) {
+        values.add(string(listItems.getInt(i * Integer.BYTES)));
+      }
+      return values;
+    }
+
+    /* decodes the string on first use, so that each distinct string is created once */
+    private String string(int index) {
+      if (index == NONE) {
+        return null;
+      }
+      String value = strings[index];
+      if (isNull(value)) {
+        int start = stringOffsets.getInt(index * Integer.BYTES);
+        int end =
+            index + 1 < stringCount
+                ? stringOffsets.getInt((index + 1) * Integer.BYTES)
+                : stringByteCount;
+        byte[] bytes = new byte[end - start];
+        ((ByteBuffer) stringBytes.duplicate().position(start)).get(bytes);
+        value = new String(bytes, StandardCharsets.UTF_8);
+        strings[index] = value;
+      }
+      return value;
+    }
+
+    private static int intAt(ByteBuffer table, int recordSize, int record, int field) {
+      return table.getInt((record * recordSize + field) * Integer.BYTES);
+    }
+
+    /* the next bytes of the snapshot, as a table of their own */
+    private static ByteBuffer table(ByteBuffer buffer, int size) {
+      if (size < 0 || size > buffer.remaining()) {
+        throw new RuntimeException("Truncated rules snapshot");
+      }
+      ByteBuffer table = buffer.slice();
+      table.limit(size);
+      buffer.position(buffer.position() + size);
+      return table;
+    }
+  }
+
+  /* number of ints in each type of record */
+  private static final class Records {
+    static final int HEADER = 14;
+    static final int LIST = 2;
+    static final int CONDITION = 15;
+    static final int CONDITION_BYTES = CONDITION * Integer.BYTES + 2 * Long.BYTES;
+    static final int ACTION = 4;
+    static final int PARAMETER = 4;
+    static final int PREDICATE = 6;
+    static final int PREDICATE_BYTES = PREDICATE * Integer.BYTES + Long.BYTES;
+    static final int GROUP = 4;
+    static final int MEMBER = 2;
+    static final int FEATURE = 19;
+  }
+
+  private static final class ConditionRecord {
+    final int[] fields = new int[Records.CONDITION];
+    long withinDays;
+    long beyondDays;
+
+    void write(DataOutputStream out) throws IOException {
+      for (int field : fields) {
+        out.writeInt(field);
+      }
+      out.writeLong(withinDays);
+      out.writeLong(beyondDays);
+    }
+  }
+
+  private static final class PredicateRecord {
+    final int[] fields = new int[Records.PREDICATE];
+    long number;
+
+    void write(DataOutputStream out) throws IOException {
+      for (int field : fields) {
+        out.writeInt(field);
+      }
+      out.writeLong(number);
+    }
+  }
+
+  /* growable array of ints, to avoid boxing while records are collected */
+  private static final class IntList {
+    private int[] values = new int[16];
+    private int size;
+
+    IntList add(int... more) {
+      return add(more, more.length);
+    }
+
+    IntList add(IntList more) {
+      return add(more.values, more.size);
+    }
+
+    private IntList add(int[] more, int count) {
+      if (size + count > values.length) {
+        values = Arrays.copyOf(values, Math.max(values.length * 2, size + count));
+      }
+      System.arraycopy(more, 0, values, size, count);
+      size += count;
+      return this;
+    }
+
+    int size() {
+      return size;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      for (int i = 0; i < size; i++) {
+        out.writeInt(values[i]);
+      }
+    }
+  }
+}
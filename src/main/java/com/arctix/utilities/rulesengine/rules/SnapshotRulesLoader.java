@@ -0,0 +1,76 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static java.util.Objects.requireNonNull;
+
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads rule sets from binary snapshots written by {@link RulesSnapshot}, instead of parsing JSON.
+ * Snapshot files are memory-mapped rather than read into the heap, and each distinct string of a
+ * rule set is created once. Rule sets are loaded as compiled rules (see {@link
+ * #loadCompiled(String)}) straight from the mapped snapshot, without compiling them again. Paths
+ * are file system paths, optionally prefixed with 'file:'. To cache the loaded rule sets, wrap
+ * this loader in a {@link CachingRulesLoader}.
+ */
+public class SnapshotRulesLoader implements CompiledRulesLoader {
+
+  private static final String FILE = "file:";
+
+  @Override
+  public Rules load(String path) {
+    return RulesSnapshot.read(map(path));
+  }
+
+  @Override
+  public CompletableFuture<CompiledRules> loadCompiled(String path) {
+    return CompletableFuture.completedFuture(RulesSnapshot.readCompiled(map(path)));
+  }
+
+  private static MappedByteBuffer map(String path) {
+    requireNonNull(path);
+    String fileName = path.startsWith(FILE) ? path.substring(FILE.length()) : path;
+    try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException ioException) {
+      throw new RuntimeException(ioException);
+    }
+  }
+
+  @Override
+  public Rules load(InputStream inputStream) {
+    requireNonNull(inputStream);
+    try {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] chunk = new byte[8192];
+      for (int read = inputStream.read(chunk); read >= 0; read = inputStream.read(chunk)) {
+        content.write(chunk, 0, read);
+      }
+      return load(content.toByteArray());
+    } catch (IOException ioException) {
+      throw new RuntimeException(ioException);
+    }
+  }
+
+  @Override
+  public Rules load(byte[] content) {
+    requireNonNull(content);
+    return RulesSnapshot.read(ByteBuffer.wrap(content));
+  }
+
+  @Override
+  public void cleanUp() {}
+}
@@ -0,0 +1,80 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import com.arctix.utilities.rulesengine.rules.models.RequirementMatchingOptions;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Resolved {@link RequirementMatchingOptions#getCombination()} of a group of conditions. */
+public enum Combination {
+  /** All conditions must match. */
+  AND,
+  /** Any one of the conditions must match. */
+  OR,
+  /** At least {@link RequirementMatchingOptions#getMinimum()} conditions must match. */
+  AT_LEAST;
+
+  private static final Logger LOG = LoggerFactory.getLogger(Combination.class);
+
+  /**
+   * Returns the combination set in the given options, 'and' if none is set.
+   *
+   * @param options
+   * @return
+   */
+  public static Combination of(RequirementMatchingOptions options) {
+    if (options == null || isBlank(options.getCombination())) {
+      return AND;
+    }
+    switch (options.getCombination().replace("_", "").toLowerCase(Locale.ROOT)) {
+      case "and":
+        return AND;
+      case "or":
+        return OR;
+      case "atleast":
+        return AT_LEAST;
+      default:
+        LOG.warn("Combination not implemented: {}. Assuming 'and'.", options.getCombination());
+        return AND;
+    }
+  }
+
+  /**
+   * Number of matching conditions required for a group of the given size to match. A minimum of an
+   * 'atLeast' group that is less than one is raised to one, so that a missing minimum does not make
+   * the group match without any conditions. A minimum more than the size of the group is kept, so
+   * that the group never matches (rather than requiring all of its conditions).
+   *
+   * @param options
+   * @param size
+   * @return
+   */
+  int getRequiredMatches(RequirementMatchingOptions options, int size) {
+    switch (this) {
+      case OR:
+        return Math.min(1, size);
+      case AT_LEAST:
+        int required = Math.max(options.getMinimum(), 1);
+        if (required != options.getMinimum()) {
+          LOG.warn(
+              "Minimum {} of 'atLeast' combination is less than 1. Using 1.",
+              options.getMinimum());
+        }
+        if (required > size) {
+          LOG.warn(
+              "Minimum {} of 'atLeast' combination is more than its {} members. It never matches.",
+              required,
+              size);
+        }
+        return required;
+      default:
+        return size;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.function.Supplier;
+
+/**
+ * An {@link EvaluationCondition} with its key parsed and its matcher resolved. Identical
+ * conditions of all features of a rule-set are compiled into one shared instance (a predicate),
+ * identified by its index, so that it is evaluated once per data set.
+ */
+public final class CompiledCondition {
+  private final Supplier<EvaluationCondition> condition;
+  private final ParameterKey key;
+  private final Operator operator;
+  private final Parameter nullParameter;
+  private final int index;
+  private final ConditionStatistics statistics = new ConditionStatistics();
+
+  /* minimum evaluations before observed pass rate is used for ordering conditions */
+  private static final long MIN_SAMPLES = 100;
+  /* failure rate assumed for conditions without enough samples */
+  private static final double DEFAULT_FAILURE_RATE = 0.5;
+  private static final double MIN_FAILURE_RATE = 0.01;
+
+  public CompiledCondition(EvaluationCondition condition) {
+    this(condition, -1);
+  }
+
+  /**
+   * Condition that is shared by features of the same rule-set.
+   *
+   * @param condition
+   * @param index - index of the predicate within its rule-set, or -1 if it is not shared
+   */
+  public CompiledCondition(EvaluationCondition condition, int index) {
+    this(new ParameterKey(condition.getKey()), Operators.of(condition), index, () -> condition);
+  }
+
+  /**
+   * Condition whose key and operator have already been resolved (eg. read from a snapshot of
+   * compiled rules).
+   *
+   * @param key
+   * @param operator
+   * @param index - index of the predicate within its rule-set, or -1 if it is not shared
+   * @param condition - supplies the source condition, which is only needed for reporting
+   */
+  public CompiledCondition(
+      ParameterKey key, Operator operator, int index, Supplier<EvaluationCondition> condition) {
+    this.condition = condition;
+    this.key = key;
+    this.operator = operator;
+    this.nullParameter = new Parameter(key, null);
+    this.index = index;
+  }
+
+  /** Source condition, as written in the rules DSL. */
+  public EvaluationCondition getCondition() {
+    return condition.get();
+  }
+
+  public ParameterKey getKey() {
+    return key;
+  }
+
+  /** Index of the predicate within its rule-set, or -1 if the condition is not shared. */
+  public int getIndex() {
+    return index;
+  }
+
+  public Operator getOperator() {
+    return operator;
+  }
+
+  /** Parameter used for evaluating the condition when no data exists for its key. */
+  public Parameter getNullParameter() {
+    return nullParameter;
+  }
+
+  public int getCost() {
+    return operator.getCost();
+  }
+
+  /** Evaluations of the condition (by all features sharing it), used for ordering conditions. */
+  public ConditionStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Expected cost of evaluating the condition per feature it rules out. Conditions that must all
+   * match are evaluated in increasing order of rank, so that cheap conditions that often fail are
+   * evaluated first. Uses the observed pass rate of the condition once it has been evaluated enough
+   * times.
+   *
+   * @return
+   */
+  public double getRank() {
+    return getCost() / Math.max(getFailureRate(), MIN_FAILURE_RATE);
+  }
+
+  /**
+   * Expected cost of evaluating the condition per match. Conditions of which any one must match
+   * are evaluated in increasing order of this rank, so that cheap conditions that often match are
+   * evaluated first.
+   *
+   * @return
+   */
+  public double getMatchRank() {
+    return getCost() / Math.max(1.0 - getFailureRate(), MIN_FAILURE_RATE);
+  }
+
+  /** Observed failure rate of the condition, or an assumed rate if there are too few samples. */
+  public double getFailureRate() {
+    return statistics.getEvaluationCount() < MIN_SAMPLES
+        ? DEFAULT_FAILURE_RATE
+        : 1.0 - statistics.getPassRate();
+  }
+
+  public boolean matches(Parameter parameter) {
+    return operator.matches(parameter);
+  }
+
+  public boolean matches(Parameter parameter, long now) {
+    return operator.matches(parameter, now);
+  }
+
+  public boolean isNegative() {
+    return operator.isNegative();
+  }
+
+  @Override
+  public String toString() {
+    return getCondition().toString();
+  }
+}
@@ -0,0 +1,238 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import static org.apache.commons.collections4.CollectionUtils.isEmpty;
+
+import com.arctix.utilities.rulesengine.rules.RulesEvaluator;
+import com.arctix.utilities.rulesengine.rules.models.Action;
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** A {@link Feature} with its conditions compiled and its return values resolved. */
+public final class CompiledFeature {
+  private static final String RETURN_TYPE = "return";
+
+  /* conditions are re-ordered on one in every REORDER_INTERVAL evaluations, on average */
+  private static final int REORDER_INTERVAL = 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(CompiledFeature.class);
+
+  private final String name;
+  private final Supplier<Feature> feature;
+  private final ConditionGroup preConditionGroup;
+  private final ConditionGroup conditionGroup;
+  private final ConditionGroup postConditionGroup;
+  private final List<CompiledCondition> preConditions;
+  private final List<CompiledCondition> conditions;
+  private final List<CompiledCondition> postConditions;
+  private final Set<String> preConditionDataSources;
+  private final Set<String> conditionDataSources;
+  private final Set<String> postConditionDataSources;
+  private final String positiveReturnValue;
+  private final String negativeReturnValue;
+
+  public CompiledFeature(Feature feature) {
+    this(feature, CompiledCondition::new);
+  }
+
+  /**
+   * Compiles the given feature, using the given function to compile its conditions.
+   *
+   * @param feature
+   * @param conditionCompiler - may return shared instances for identical conditions
+   */
+  public CompiledFeature(
+      Feature feature, Function<EvaluationCondition, CompiledCondition> conditionCompiler) {
+    this(
+        feature.getName(),
+        () -> feature,
+        new ConditionGroup(
+            null, feature.getRequirements().getPreConditions(), conditionCompiler),
+        new ConditionGroup(
+            feature.getRequirements().getOptions(),
+            feature.getRequirements().getConditions(),
+            conditionCompiler),
+        new ConditionGroup(
+            null, feature.getRequirements().getPostConditions(), conditionCompiler),
+        getReturnValue(feature.getActions(), true),
+        getReturnValue(feature.getActions(), false));
+  }
+
+  /**
+   * Feature of already compiled condition groups (eg. read from a snapshot of compiled rules).
+   *
+   * @param name
+   * @param feature - supplies the source feature, which is only needed for reporting
+   * @param preConditionGroup
+   * @param conditionGroup
+   * @param postConditionGroup
+   * @param positiveReturnValue - value returned when the feature is eligible
+   * @param negativeReturnValue - value returned when the feature is not eligible
+   */
+  public CompiledFeature(
+      String name,
+      Supplier<Feature> feature,
+      ConditionGroup preConditionGroup,
+      ConditionGroup conditionGroup,
+      ConditionGroup postConditionGroup,
+      String positiveReturnValue,
+      String negativeReturnValue) {
+    this.name = name;
+    this.feature = feature;
+    this.preConditionGroup = preConditionGroup;
+    this.conditionGroup = conditionGroup;
+    this.postConditionGroup = postConditionGroup;
+    this.preConditions = preConditionGroup.getAllConditions();
+    this.conditions = conditionGroup.getAllConditions();
+    this.postConditions = postConditionGroup.getAllConditions();
+    this.preConditionDataSources = dataSources(preConditions);
+    this.conditionDataSources = dataSources(conditions);
+    this.postConditionDataSources = dataSources(postConditions);
+    this.positiveReturnValue = positiveReturnValue;
+    this.negativeReturnValue = negativeReturnValue;
+  }
+
+  /** Source feature, as written in the rules DSL. */
+  public Feature getFeature() {
+    return feature.get();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * All conditions of given type, including those of nested groups, in the order they are
+   * declared.
+   *
+   * @param options
+   * @return
+   */
+  public List<CompiledCondition> getConditions(RulesEvaluator.Options options) {
+    switch (options) {
+      case PRE_CONDITIONS_ONLY:
+        return preConditions;
+      case POST_CONDITIONS_ONLY:
+        return postConditions;
+      default:
+        return conditions;
+    }
+  }
+
+  /**
+   * Conditions of given type, as a group combined as set in the requirement's options (pre and
+   * post conditions are always combined with 'and'). Conditions of groups are evaluated in
+   * increasing order of their rank (see {@link CompiledCondition#getRank()}), so that cheap and
+   * selective conditions short-circuit the evaluation of a feature. The order is refreshed from
+   * the statistics of the conditions about once every {@value #REORDER_INTERVAL} calls.
+   *
+   * @param options
+   * @return
+   */
+  public ConditionGroup getConditionGroup(RulesEvaluator.Options options) {
+    if (ThreadLocalRandom.current().nextInt(REORDER_INTERVAL) == 0) {
+      reorder(options);
+    }
+    return group(options);
+  }
+
+  /**
+   * Conditions of given type, excluding those of nested groups, in the order they are evaluated.
+   *
+   * @param options
+   * @return
+   */
+  public List<CompiledCondition> getEvaluationOrder(RulesEvaluator.Options options) {
+    return getConditionGroup(options).getEvaluationOrder();
+  }
+
+  /**
+   * Orders conditions of given type by their current rank.
+   *
+   * @param options
+   */
+  public void reorder(RulesEvaluator.Options options) {
+    ConditionGroup group = group(options);
+    if (group.reorder() && LOG.isDebugEnabled()) {
+      LOG.debug(
+          "{}: Evaluation order of feature {} changed to: {}",
+          options,
+          getName(),
+          group.getEvaluationOrder());
+    }
+  }
+
+  private ConditionGroup group(RulesEvaluator.Options options) {
+    switch (options) {
+      case PRE_CONDITIONS_ONLY:
+        return preConditionGroup;
+      case POST_CONDITIONS_ONLY:
+        return postConditionGroup;
+      default:
+        return conditionGroup;
+    }
+  }
+
+  public boolean hasPreConditions() {
+    return !preConditions.isEmpty();
+  }
+
+  public boolean hasPostConditions() {
+    return !postConditions.isEmpty();
+  }
+
+  /**
+   * Names of the data sources referenced by the conditions of given type.
+   *
+   * @param options
+   * @return
+   */
+  public Set<String> getDataSources(RulesEvaluator.Options options) {
+    switch (options) {
+      case PRE_CONDITIONS_ONLY:
+        return preConditionDataSources;
+      case POST_CONDITIONS_ONLY:
+        return postConditionDataSources;
+      default:
+        return conditionDataSources;
+    }
+  }
+
+  public String getReturnValue(boolean isPositive) {
+    return isPositive ? positiveReturnValue : negativeReturnValue;
+  }
+
+  private static Set<String> dataSources(List<CompiledCondition> conditions) {
+    Set<String> dataSources = new LinkedHashSet<>();
+    conditions.forEach(condition -> dataSources.add(condition.getKey().getDataSource()));
+    return Collections.unmodifiableSet(dataSources);
+  }
+
+  private static String getReturnValue(List<Action> actions, boolean isPositive) {
+    if (isEmpty(actions)) {
+      return Boolean.toString(isPositive);
+    }
+    return actions.stream()
+        .filter(action -> action.getType().equalsIgnoreCase(RETURN_TYPE))
+        .findFirst()
+        .map(action -> isPositive ? action.getValue() : action.getDefaultValue())
+        .orElse(Boolean.toString(isPositive));
+  }
+
+  @Override
+  public String toString() {
+    return getFeature().toString();
+  }
+}
@@ -0,0 +1,125 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import com.arctix.utilities.rulesengine.rules.RulesEvaluator;
+import com.arctix.utilities.rulesengine.rules.models.FetchMode;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable evaluation plan for a set of business rules. Holds the compiled features along with
+ * the parameters required for evaluating them, grouped by data source.
+ */
+public final class CompiledRules {
+  private final List<CompiledFeature> features;
+  private final Map<RulesEvaluator.Options, Map<String, List<ParameterKey>>> parameters =
+      new EnumMap<>(RulesEvaluator.Options.class);
+  private final FetchMode fetchMode;
+  private final int predicateCount;
+  private final Supplier<Rules> rules;
+
+  public CompiledRules(List<CompiledFeature> features) {
+    this(features, null);
+  }
+
+  public CompiledRules(List<CompiledFeature> features, FetchMode fetchMode) {
+    this(features, fetchMode, null);
+  }
+
+  /**
+   * Evaluation plan of the given features.
+   *
+   * @param features
+   * @param fetchMode
+   * @param rules - supplies the source rules, null if they are those of the features
+   */
+  public CompiledRules(
+      List<CompiledFeature> features, FetchMode fetchMode, Supplier<Rules> rules) {
+    this.features = Collections.unmodifiableList(new ArrayList<>(features));
+    this.fetchMode = fetchMode;
+    this.rules = rules;
+    int maxIndex = -1;
+    for (RulesEvaluator.Options options : RulesEvaluator.Options.values()) {
+      parameters.put(options, groupByDataSource(this.features, options));
+      for (CompiledFeature feature : this.features) {
+        for (CompiledCondition condition : feature.getConditions(options)) {
+          maxIndex = Math.max(maxIndex, condition.getIndex());
+        }
+      }
+    }
+    this.predicateCount = maxIndex + 1;
+  }
+
+  public List<CompiledFeature> getFeatures() {
+    return features;
+  }
+
+  /** Source rules of the plan, as written in the rules DSL. */
+  public Rules getRules() {
+    if (Objects.nonNull(rules)) {
+      return rules.get();
+    }
+    Rules source =
+        new Rules(features.stream().map(CompiledFeature::getFeature).collect(Collectors.toList()));
+    source.setFetchMode(fetchMode);
+    return source;
+  }
+
+  /** Fetch mode for all data sources used by these rules, or null to use their own fetch mode. */
+  public FetchMode getFetchMode() {
+    return fetchMode;
+  }
+
+  /**
+   * Number of predicates (shared conditions) of these rules. Indexes of all shared conditions are
+   * less than this count.
+   */
+  public int getPredicateCount() {
+    return predicateCount;
+  }
+
+  /**
+   * Set of parameters required for evaluating conditions of the given type. Return type is a map
+   * keyed/grouped by data source and list of parameters from that data source.
+   *
+   * @param options
+   * @return
+   */
+  public Map<String, List<ParameterKey>> getParametersByDataSource(
+      RulesEvaluator.Options options) {
+    return parameters.get(options);
+  }
+
+  /**
+   * Returns a plan containing only the features that satisfy the given predicate.
+   *
+   * @param predicate
+   * @return
+   */
+  public CompiledRules filter(Predicate<CompiledFeature> predicate) {
+    List<CompiledFeature> filtered =
+        features.stream().filter(predicate).collect(Collectors.toList());
+    return filtered.size() == features.size() ? this : new CompiledRules(filtered, fetchMode);
+  }
+
+  private static Map<String, List<ParameterKey>> groupByDataSource(
+      List<CompiledFeature> features, RulesEvaluator.Options options) {
+    Map<String, List<ParameterKey>> parametersByDataSource =
+        features.stream()
+            .flatMap(feature -> feature.getConditions(options).stream())
+            .map(CompiledCondition::getKey)
+            .distinct()
+            .collect(
+                Collectors.groupingBy(
+                    ParameterKey::getDataSource, LinkedHashMap::new, Collectors.toList()));
+    parametersByDataSource.replaceAll((dataSource, keys) -> Collections.unmodifiableList(keys));
+    return Collections.unmodifiableMap(parametersByDataSource);
+  }
+}
@@ -0,0 +1,159 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import static org.apache.commons.collections4.CollectionUtils.isEmpty;
+
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.RequirementMatchingOptions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Conditions combined with 'and', 'or' or 'at least N of'. A group contains conditions and nested
+ * groups. It matches once the required number of its members match.
+ */
+public final class ConditionGroup {
+  private final Combination combination;
+  private final int requiredMatches;
+  private final List<CompiledCondition> conditions;
+  private final List<ConditionGroup> groups;
+  private final List<CompiledCondition> allConditions;
+  private volatile List<CompiledCondition> evaluationOrder;
+
+  /**
+   * Compiles the given conditions into a group.
+   *
+   * @param options - options for combining the conditions, null for 'and'
+   * @param conditions - conditions, including nested groups
+   * @param conditionCompiler
+   */
+  public ConditionGroup(
+      RequirementMatchingOptions options,
+      List<EvaluationCondition> conditions,
+      Function<EvaluationCondition, CompiledCondition> conditionCompiler) {
+    List<CompiledCondition> compiled = new ArrayList<>();
+    List<ConditionGroup> nested = new ArrayList<>();
+    List<CompiledCondition> all = new ArrayList<>();
+    if (!isEmpty(conditions)) {
+      for (EvaluationCondition condition : conditions) {
+        if (condition.isGroup()) {
+          ConditionGroup group =
+              new ConditionGroup(
+                  condition.getOptions(), condition.getConditions(), conditionCompiler);
+          nested.add(group);
+          all.addAll(group.getAllConditions());
+        } else {
+          CompiledCondition compiledCondition = conditionCompiler.apply(condition);
+          compiled.add(compiledCondition);
+          all.add(compiledCondition);
+        }
+      }
+    }
+    this.combination = Combination.of(options);
+    this.requiredMatches = combination.getRequiredMatches(options, compiled.size() + nested.size());
+    this.conditions = Collections.unmodifiableList(compiled);
+    this.groups = Collections.unmodifiableList(nested);
+    this.allConditions = Collections.unmodifiableList(all);
+    this.evaluationOrder = order();
+  }
+
+  /**
+   * Group of already compiled conditions and groups (eg. read from a snapshot of compiled rules).
+   *
+   * @param combination
+   * @param requiredMatches - number of members that must match for the group to match
+   * @param conditions - conditions of the group, excluding nested groups, in declared order
+   * @param groups - nested groups, in declared order
+   * @param allConditions - conditions of the group and of all nested groups, in declared order
+   */
+  public ConditionGroup(
+      Combination combination,
+      int requiredMatches,
+      List<CompiledCondition> conditions,
+      List<ConditionGroup> groups,
+      List<CompiledCondition> allConditions) {
+    this.combination = combination;
+    this.requiredMatches = requiredMatches;
+    this.conditions = Collections.unmodifiableList(conditions);
+    this.groups = Collections.unmodifiableList(groups);
+    this.allConditions = Collections.unmodifiableList(allConditions);
+    this.evaluationOrder = order();
+  }
+
+  public Combination getCombination() {
+    return combination;
+  }
+
+  /** Number of members (conditions and groups) that must match for the group to match. */
+  public int getRequiredMatches() {
+    return requiredMatches;
+  }
+
+  /** Number of members, ie. conditions and groups. */
+  public int size() {
+    return conditions.size() + groups.size();
+  }
+
+  /** Conditions of the group, excluding nested groups, in the order they are declared. */
+  public List<CompiledCondition> getConditions() {
+    return conditions;
+  }
+
+  public List<ConditionGroup> getGroups() {
+    return groups;
+  }
+
+  /** Conditions of the group and of all nested groups, in the order they are declared. */
+  public List<CompiledCondition> getAllConditions() {
+    return allConditions;
+  }
+
+  /**
+   * Conditions of the group (excluding nested groups) in the order they are evaluated, ie. in
+   * increasing order of their rank for the group's combination. Nested groups are evaluated after
+   * them.
+   *
+   * @return
+   */
+  public List<CompiledCondition> getEvaluationOrder() {
+    return evaluationOrder;
+  }
+
+  /**
+   * Orders conditions of the group and of its nested groups by their current rank.
+   *
+   * @return true if the order of this group's conditions changed
+   */
+  public boolean reorder() {
+    groups.forEach(ConditionGroup::reorder);
+    List<CompiledCondition> order = order();
+    boolean changed = !order.equals(evaluationOrder);
+    evaluationOrder = order;
+    return changed;
+  }
+
+  private List<CompiledCondition> order() {
+    if (conditions.size() < 2) {
+      return conditions;
+    }
+    // ranks change while conditions are evaluated, so sort on a snapshot of them
+    double[] ranks = new double[conditions.size()];
+    List<Integer> positions = new ArrayList<>(conditions.size());
+    for (int position = 0; position < conditions.size(); position++) {
+      CompiledCondition condition = conditions.get(position);
+      ranks[position] =
+          combination == Combination.OR ? condition.getMatchRank() : condition.getRank();
+      positions.add(position);
+    }
+    positions.sort(Comparator.comparingDouble(position -> ranks[position]));
+    List<CompiledCondition> order = new ArrayList<>(conditions.size());
+    positions.forEach(position -> order.add(conditions.get(position)));
+    return Collections.unmodifiableList(order);
+  }
+}
@@ -0,0 +1,48 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counts of evaluations of a condition, and of those that matched, since it was compiled. */
+public final class ConditionStatistics {
+  private final LongAdder evaluations = new LongAdder();
+  private final LongAdder matches = new LongAdder();
+
+  public void record(boolean matched) {
+    evaluations.increment();
+    if (matched) {
+      matches.increment();
+    }
+  }
+
+  public long getEvaluationCount() {
+    return evaluations.sum();
+  }
+
+  public long getMatchCount() {
+    return matches.sum();
+  }
+
+  /**
+   * Fraction of evaluations that matched.
+   *
+   * @return pass rate between 0 and 1, or -1 if the condition has not been evaluated
+   */
+  public double getPassRate() {
+    long evaluationCount = getEvaluationCount();
+    return evaluationCount == 0 ? -1 : Math.min(1.0, (double) getMatchCount() / evaluationCount);
+  }
+
+  @Override
+  public String toString() {
+    return "ConditionStatistics{"
+        + "evaluations="
+        + getEvaluationCount()
+        + ", matches="
+        + getMatchCount()
+        + '}';
+  }
+}
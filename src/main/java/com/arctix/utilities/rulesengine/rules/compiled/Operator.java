@@ -0,0 +1,40 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+
+/** A matcher resolved from a condition, with its given value(s) already parsed. */
+public interface Operator {
+
+  /**
+   * Matches the data-value of the given parameter.
+   *
+   * @param parameter
+   * @param now - evaluation time in milliseconds since epoch, used by date operators
+   * @return
+   */
+  boolean matches(Parameter parameter, long now);
+
+  default boolean matches(Parameter parameter) {
+    return matches(parameter, System.currentTimeMillis());
+  }
+
+  /**
+   * Relative cost of matching a data-value, used for evaluating cheaper conditions first. Costs
+   * range from 1 (eg. equals) upwards.
+   */
+  default int getCost() {
+    return 1;
+  }
+
+  /**
+   * Negative operators (eg. notEquals) must match all data-values of a parameter, while positive
+   * operators need to match any one of them.
+   */
+  default boolean isNegative() {
+    return false;
+  }
+}
@@ -0,0 +1,341 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.compiled;
+
+import static java.util.Objects.nonNull;
+
+import com.arctix.utilities.rulesengine.rules.Matchers;
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.utils.CaseInsensitiveSet;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Resolves the matcher of a condition into an {@link Operator}. */
+public class Operators {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Operators.class);
+
+  private Operators() {}
+
+  /** Kinds of operators, one per matcher of the rules DSL. */
+  public enum Kind {
+    EQUAL_TO,
+    NOT_EQUAL_TO,
+    ONE_OF,
+    NOT_ONE_OF,
+    CONTAINS,
+    NOT_CONTAINS,
+    AFTER,
+    BEFORE,
+    WITHIN_DAYS,
+    BEYOND_DAYS,
+    /** No matcher is set, the condition never matches. */
+    NONE
+  }
+
+  /**
+   * Returns the operator for the matcher set in the given condition. Matchers are checked in the
+   * same order in which they have always been evaluated, so that a condition with more than one
+   * matcher behaves as before.
+   *
+   * @param condition
+   * @return
+   */
+  public static Operator of(EvaluationCondition condition) {
+    switch (kindOf(condition)) {
+      case EQUAL_TO:
+        return new EqualTo(condition.getEquals());
+      case NOT_EQUAL_TO:
+        return new NotEqualTo(condition.getNotEquals());
+      case ONE_OF:
+        return new OneOf(condition.getOneOf());
+      case NOT_ONE_OF:
+        return new NotOneOf(condition.getNotOneOf());
+      case CONTAINS:
+        return new Contains(condition.getContains());
+      case NOT_CONTAINS:
+        return new NotContains(condition.getNotContains());
+      case AFTER:
+        return new After(toEpochMillis(condition.getAfter()));
+      case BEFORE:
+        return new Before(toEpochMillis(condition.getBefore()));
+      case WITHIN_DAYS:
+        return new WithinDays(condition.getWithinDays());
+      case BEYOND_DAYS:
+        return new BeyondDays(condition.getBeyondDays());
+      default:
+        LOG.warn("Condition not implemented: {}. Assuming negative evaluation.", condition);
+        return (parameter, now) -> false;
+    }
+  }
+
+  /**
+   * Returns the operator of the given kind, for operands that have already been parsed (eg. read
+   * from a snapshot of compiled rules).
+   *
+   * @param kind
+   * @param value - value of equals, notEquals, contains and notContains matchers
+   * @param values - values of oneOf and notOneOf matchers
+   * @param number - epoch millis of after and before matchers, or days of withinDays and
+   *     beyondDays matchers
+   * @return
+   */
+  public static Operator of(Kind kind, String value, List<String> values, long number) {
+    switch (kind) {
+      case EQUAL_TO:
+        return new EqualTo(value);
+      case NOT_EQUAL_TO:
+        return new NotEqualTo(value);
+      case ONE_OF:
+        return new OneOf(values);
+      case NOT_ONE_OF:
+        return new NotOneOf(values);
+      case CONTAINS:
+        return new Contains(value);
+      case NOT_CONTAINS:
+        return new NotContains(value);
+      case AFTER:
+        return new After(number);
+      case BEFORE:
+        return new Before(number);
+      case WITHIN_DAYS:
+        return new WithinDays(number);
+      case BEYOND_DAYS:
+        return new BeyondDays(number);
+      default:
+        return (parameter, now) -> false;
+    }
+  }
+
+  /**
+   * Returns the kind of operator for the matcher set in the given condition (see {@link
+   * #of(EvaluationCondition)}).
+   *
+   * @param condition
+   * @return
+   */
+  public static Kind kindOf(EvaluationCondition condition) {
+    if (nonNull(condition.getEquals())) {
+      return Kind.EQUAL_TO;
+    } else if (nonNull(condition.getNotEquals())) {
+      return Kind.NOT_EQUAL_TO;
+    } else if (nonNull(condition.getOneOf())) {
+      return Kind.ONE_OF;
+    } else if (nonNull(condition.getNotOneOf())) {
+      return Kind.NOT_ONE_OF;
+    } else if (nonNull(condition.getContains())) {
+      return Kind.CONTAINS;
+    } else if (nonNull(condition.getNotContains())) {
+      return Kind.NOT_CONTAINS;
+    } else if (nonNull(condition.getAfter())) {
+      return Kind.AFTER;
+    } else if (nonNull(condition.getBefore())) {
+      return Kind.BEFORE;
+    } else if (condition.getWithinDays() > 0) {
+      return Kind.WITHIN_DAYS;
+    } else if (condition.getBeyondDays() > 0) {
+      return Kind.BEYOND_DAYS;
+    }
+    return Kind.NONE;
+  }
+
+  /**
+   * Parses a date (time) of an after or before matcher.
+   *
+   * @param givenDate - ISO-8601 date-time with an offset
+   * @return
+   */
+  public static long toEpochMillis(String givenDate) {
+    return ZonedDateTime.parse(givenDate).toInstant().toEpochMilli();
+  }
+
+  static final class EqualTo implements Operator {
+    private final String option;
+
+    EqualTo(String option) {
+      this.option = option;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isEqualTo(option, parameter);
+    }
+  }
+
+  static final class NotEqualTo implements Operator {
+    private final String option;
+
+    NotEqualTo(String option) {
+      this.option = option;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isNotEqualTo(option, parameter);
+    }
+
+    @Override
+    public boolean isNegative() {
+      return true;
+    }
+  }
+
+  static final class OneOf implements Operator {
+    private final CaseInsensitiveSet options;
+
+    OneOf(List<String> options) {
+      this.options = new CaseInsensitiveSet(options);
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isOneOf(options, parameter);
+    }
+
+    @Override
+    public int getCost() {
+      return 2;
+    }
+  }
+
+  static final class NotOneOf implements Operator {
+    private final CaseInsensitiveSet options;
+
+    NotOneOf(List<String> options) {
+      this.options = new CaseInsensitiveSet(options);
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isNotOneOf(options, parameter);
+    }
+
+    @Override
+    public int getCost() {
+      return 2;
+    }
+
+    @Override
+    public boolean isNegative() {
+      return true;
+    }
+  }
+
+  static final class Contains implements Operator {
+    private final String option;
+
+    Contains(String option) {
+      this.option = option;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.contains(option, parameter);
+    }
+
+    @Override
+    public int getCost() {
+      return 3;
+    }
+  }
+
+  static final class NotContains implements Operator {
+    private final String option;
+
+    NotContains(String option) {
+      this.option = option;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.notContains(option, parameter);
+    }
+
+    @Override
+    public int getCost() {
+      return 3;
+    }
+
+    @Override
+    public boolean isNegative() {
+      return true;
+    }
+  }
+
+  static final class After implements Operator {
+    private final long givenDate;
+
+    After(long givenDate) {
+      this.givenDate = givenDate;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isAfter(givenDate, parameter, now);
+    }
+
+    @Override
+    public int getCost() {
+      return 4;
+    }
+  }
+
+  static final class Before implements Operator {
+    private final long givenDate;
+
+    Before(long givenDate) {
+      this.givenDate = givenDate;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isBefore(givenDate, parameter, now);
+    }
+
+    @Override
+    public int getCost() {
+      return 4;
+    }
+  }
+
+  static final class WithinDays implements Operator {
+    private final long numberOfDays;
+
+    WithinDays(long numberOfDays) {
+      this.numberOfDays = numberOfDays;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isWithinDays(numberOfDays, parameter, now);
+    }
+
+    @Override
+    public int getCost() {
+      return 4;
+    }
+  }
+
+  static final class BeyondDays implements Operator {
+    private final long numberOfDays;
+
+    BeyondDays(long numberOfDays) {
+      this.numberOfDays = numberOfDays;
+    }
+
+    @Override
+    public boolean matches(Parameter parameter, long now) {
+      return Matchers.isBeyondDays(numberOfDays, parameter, now);
+    }
+
+    @Override
+    public int getCost() {
+      return 4;
+    }
+  }
+}
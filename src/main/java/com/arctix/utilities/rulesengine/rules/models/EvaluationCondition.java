@@ -5,8 +5,11 @@
 package com.arctix.utilities.rulesengine.rules.models;
 
 import java.util.List;
+import java.util.Objects;
 
 public class EvaluationCondition {
+  public static final String GROUP_TYPE = "group";
+
   String key;
   String type;
   String equals;
@@ -19,6 +22,8 @@ public class EvaluationCondition {
   String notContains;
   String after;
   String before;
+  RequirementMatchingOptions options;
+  List<EvaluationCondition> conditions;
 
   public EvaluationCondition(String key, String equals) {
     this.key = key;
@@ -137,6 +142,28 @@ public class EvaluationCondition {
     this.before = before;
   }
 
+  /** Options for combining conditions of a group. */
+  public RequirementMatchingOptions getOptions() {
+    return options;
+  }
+
+  public void setOptions(RequirementMatchingOptions options) {
+    this.options = options;
+  }
+
+  /** Conditions of a group, ie. a condition of type 'group'. */
+  public List<EvaluationCondition> getConditions() {
+    return conditions;
+  }
+
+  public void setConditions(List<EvaluationCondition> conditions) {
+    this.conditions = conditions;
+  }
+
+  public boolean isGroup() {
+    return GROUP_TYPE.equalsIgnoreCase(type);
+  }
+
   @Override
   public String toString() {
     return "EvaluationCondition{"
@@ -172,6 +199,50 @@ public class EvaluationCondition {
         + ", before='"
         + before
         + '\''
+        + ", options="
+        + options
+        + ", conditions="
+        + conditions
         + '}';
   }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    EvaluationCondition that = (EvaluationCondition) o;
+    return withinDays == that.withinDays
+        && beyondDays == that.beyondDays
+        && Objects.equals(key, that.key)
+        && Objects.equals(type, that.type)
+        && Objects.equals(equals, that.equals)
+        && Objects.equals(notEquals, that.notEquals)
+        && Objects.equals(oneOf, that.oneOf)
+        && Objects.equals(notOneOf, that.notOneOf)
+        && Objects.equals(contains, that.contains)
+        && Objects.equals(notContains, that.notContains)
+        && Objects.equals(after, that.after)
+        && Objects.equals(before, that.before)
+        && Objects.equals(options, that.options)
+        && Objects.equals(conditions, that.conditions);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        key,
+        type,
+        equals,
+        notEquals,
+        oneOf,
+        notOneOf,
+        withinDays,
+        beyondDays,
+        contains,
+        notContains,
+        after,
+        before,
+        options,
+        conditions);
+  }
 }
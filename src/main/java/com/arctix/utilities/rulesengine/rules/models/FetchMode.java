@@ -0,0 +1,43 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules.models;
+
+import com.google.gson.annotations.SerializedName;
+
+/** Determines when data required for evaluating conditions is fetched from a data source. */
+public enum FetchMode {
+
+  /**
+   * Condition data is fetched after pre-conditions are evaluated, and only for features whose
+   * pre-conditions are satisfied. Suited for expensive data sources.
+   */
+  @SerializedName(value = "lazy", alternate = "LAZY")
+  LAZY,
+
+  /**
+   * Condition data is fetched together with pre-condition data, in a single call to the data
+   * source, for all features. Saves a round trip at the cost of fetching data that may not be used.
+   */
+  @SerializedName(value = "singlePass", alternate = "SINGLE_PASS")
+  SINGLE_PASS,
+
+  /**
+   * Condition data is fetched in parallel with pre-condition data, in a separate call to the data
+   * source, for all features. The data is discarded if pre-conditions of all features using it are
+   * not satisfied. Suited for cheap data sources, whose data is then ready by the time
+   * pre-conditions are evaluated.
+   */
+  @SerializedName(value = "speculative", alternate = "SPECULATIVE")
+  SPECULATIVE,
+
+  /**
+   * Condition data is fetched after conditions on data from other (non-deferred) data sources are
+   * evaluated, and only for features whose outcome is not already decided by those conditions (eg.
+   * a condition fails and all conditions must match). Suited for expensive data sources used along
+   * with cheap ones.
+   */
+  @SerializedName(value = "deferred", alternate = "DEFERRED")
+  DEFERRED
+}
@@ -73,6 +73,6 @@ public class Parameter {
 
   @Override
   public int hashCode() {
-    return Objects.hash(key);
+    return Objects.hash(key, dataValue, dataId);
   }
 }
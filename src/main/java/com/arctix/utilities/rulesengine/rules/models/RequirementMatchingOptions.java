@@ -4,8 +4,26 @@
  @year: 2021 */
 package com.arctix.utilities.rulesengine.rules.models;
 
+import java.util.Objects;
+
+/**
+ * Determines how conditions are combined: 'and' (default) requires all conditions to match, 'or'
+ * requires any one of them and 'atLeast' requires at least 'minimum' of them.
+ */
 public class RequirementMatchingOptions {
   String combination;
+  int minimum;
+
+  public RequirementMatchingOptions() {}
+
+  public RequirementMatchingOptions(String combination) {
+    this.combination = combination;
+  }
+
+  public RequirementMatchingOptions(String combination, int minimum) {
+    this.combination = combination;
+    this.minimum = minimum;
+  }
 
   public String getCombination() {
     return combination;
@@ -14,4 +32,36 @@ public class RequirementMatchingOptions {
   public void setCombination(String combination) {
     this.combination = combination;
   }
+
+  public int getMinimum() {
+    return minimum;
+  }
+
+  public void setMinimum(int minimum) {
+    this.minimum = minimum;
+  }
+
+  @Override
+  public String toString() {
+    return "RequirementMatchingOptions{"
+        + "combination='"
+        + combination
+        + '\''
+        + ", minimum="
+        + minimum
+        + '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    RequirementMatchingOptions that = (RequirementMatchingOptions) o;
+    return minimum == that.minimum && Objects.equals(combination, that.combination);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(combination, minimum);
+  }
 }
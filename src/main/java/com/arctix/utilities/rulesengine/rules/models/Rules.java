@@ -9,6 +9,9 @@ import java.util.List;
 public class Rules {
   List<Feature> features;
 
+  /* overrides the fetch mode of all data sources used by these rules, if set */
+  FetchMode fetchMode;
+
   public Rules(List<Feature> features) {
     this.features = features;
   }
@@ -22,4 +25,12 @@ public class Rules {
   public void setFeatures(List<Feature> features) {
     this.features = features;
   }
+
+  public FetchMode getFetchMode() {
+    return fetchMode;
+  }
+
+  public void setFetchMode(FetchMode fetchMode) {
+    this.fetchMode = fetchMode;
+  }
 }
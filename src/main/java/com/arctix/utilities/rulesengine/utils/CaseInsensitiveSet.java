@@ -0,0 +1,91 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.utils;
+
+import static java.util.Objects.isNull;
+
+import java.util.Collection;
+
+/**
+ * Immutable set of strings with case-insensitive membership, matching {@link
+ * String#equalsIgnoreCase(String)}. Uses open addressing over arrays, and folds case while hashing
+ * and comparing, so that lookups do not allocate.
+ */
+public final class CaseInsensitiveSet {
+  private final String[] values;
+  private final int[] hashes;
+  private final int mask;
+  private int size;
+
+  /**
+   * Creates a set containing the given values. Null values are ignored.
+   *
+   * @param values
+   */
+  public CaseInsensitiveSet(Collection<String> values) {
+    int capacity = Integer.highestOneBit(Math.max(values.size(), 1) * 2 + 1) << 1;
+    this.values = new String[capacity];
+    this.hashes = new int[capacity];
+    this.mask = capacity - 1;
+    for (String value : values) {
+      if (!isNull(value)) {
+        add(value);
+      }
+    }
+  }
+
+  public boolean contains(String value) {
+    if (isNull(value)) {
+      return false;
+    }
+    int hash = hash(value);
+    for (int i = spread(hash) & mask; !isNull(values[i]); i = (i + 1) & mask) {
+      if (hashes[i] == hash && equalsIgnoreCase(values[i], value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void add(String value) {
+    int hash = hash(value);
+    int i = spread(hash) & mask;
+    for (; !isNull(values[i]); i = (i + 1) & mask) {
+      if (hashes[i] == hash && equalsIgnoreCase(values[i], value)) {
+        return;
+      }
+    }
+    values[i] = value;
+    hashes[i] = hash;
+    size++;
+  }
+
+  private static boolean equalsIgnoreCase(String value, String other) {
+    return value.length() == other.length()
+        && value.regionMatches(true, 0, other, 0, other.length());
+  }
+
+  /* same as String.hashCode, over case folded chars */
+  private static int hash(String value) {
+    int hash = 0;
+    for (int i = 0; i < value.length(); i++) {
+      hash = 31 * hash + fold(value.charAt(i));
+    }
+    return hash;
+  }
+
+  /* chars are equal ignoring case (as in String.regionMatches) if and only if they fold equal */
+  private static char fold(char value) {
+    return Character.toLowerCase(Character.toUpperCase(value));
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
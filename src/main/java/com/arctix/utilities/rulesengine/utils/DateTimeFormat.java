@@ -19,6 +19,11 @@ public class DateTimeFormat {
   private static final String ISO_DATE_FORMAT = "^[0-9]{4}-[0-9]{2}-[0-9]{2}$";
   private static final String UTC_ZONE_ID = "Z";
 
+  public static final long MILLIS_PER_DAY = 86_400_000L;
+
+  /* days from 0000-01-01 to 1970-01-01 */
+  private static final long DAYS_0000_TO_1970 = 719_528L;
+
   /**
    * Parses ISO-8601 date/time string into LocalDateTime object. If provided string contains only
    * date, sets time of resulting object to start of day in UTC.
@@ -43,4 +48,139 @@ public class DateTimeFormat {
       throw new RuntimeException("Unknown date-time format:" + dateTimeStr);
     }
   }
+
+  /**
+   * Parses ISO-8601 date/time string into milliseconds since epoch, without allocating any
+   * objects. Accepts the same formats as {@link #parseIsoDateTime(String)}, ie. a date, or a
+   * date-time with seconds and an offset ('Z' or '+/-hh:mm'). Dates without time are at start of
+   * day in UTC. Fractions of a second beyond milliseconds are ignored.
+   *
+   * @param dateTimeStr
+   * @return
+   */
+  public static long parseIsoEpochMillis(String dateTimeStr) {
+    int length = isBlank(dateTimeStr) ? 0 : dateTimeStr.length();
+    if (length < 10 || dateTimeStr.charAt(4) != '-' || dateTimeStr.charAt(7) != '-') {
+      throw unknownFormat(dateTimeStr);
+    }
+    int year = digits(dateTimeStr, 0, 4);
+    int month = digits(dateTimeStr, 5, 2);
+    int day = digits(dateTimeStr, 8, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+      throw unknownFormat(dateTimeStr);
+    }
+    long epochMillis = toEpochDay(year, month, day) * MILLIS_PER_DAY;
+    if (length == 10) {
+      return epochMillis;
+    }
+
+    if (length < 20
+        || dateTimeStr.charAt(10) != 'T'
+        || dateTimeStr.charAt(13) != ':'
+        || dateTimeStr.charAt(16) != ':') {
+      throw unknownFormat(dateTimeStr);
+    }
+    int hour = digits(dateTimeStr, 11, 2);
+    int minute = digits(dateTimeStr, 14, 2);
+    int second = digits(dateTimeStr, 17, 2);
+    if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+      throw unknownFormat(dateTimeStr);
+    }
+    epochMillis += hour * 3_600_000L + minute * 60_000L + second * 1_000L;
+
+    int position = 19;
+    if (dateTimeStr.charAt(position) == '.') {
+      int fractionStart = ++position;
+      int millis = 0;
+      while (position < length && isDigit(dateTimeStr.charAt(position))) {
+        if (position - fractionStart < 3) {
+          millis = millis * 10 + (dateTimeStr.charAt(position) - '0');
+        }
+        position++;
+      }
+      int fractionDigits = position - fractionStart;
+      if (fractionDigits < 1 || fractionDigits > 9) {
+        throw unknownFormat(dateTimeStr);
+      }
+      for (int i = fractionDigits; i < 3; i++) {
+        millis *= 10;
+      }
+      epochMillis += millis;
+    }
+
+    if (position == length - 1 && dateTimeStr.charAt(position) == 'Z') {
+      return epochMillis;
+    }
+    char sign = position < length ? dateTimeStr.charAt(position) : ' ';
+    if ((sign != '+' && sign != '-')
+        || position + 6 != length
+        || dateTimeStr.charAt(position + 3) != ':') {
+      throw unknownFormat(dateTimeStr);
+    }
+    int offsetHours = digits(dateTimeStr, position + 1, 2);
+    int offsetMinutes = digits(dateTimeStr, position + 4, 2);
+    // offsets range from -18:00 to +18:00, as in ZoneOffset
+    if (offsetHours < 0
+        || offsetMinutes < 0
+        || offsetMinutes > 59
+        || offsetHours * 60 + offsetMinutes > 18 * 60) {
+      throw unknownFormat(dateTimeStr);
+    }
+    long offsetMillis = offsetHours * 3_600_000L + offsetMinutes * 60_000L;
+    return sign == '+' ? epochMillis - offsetMillis : epochMillis + offsetMillis;
+  }
+
+  /* value of the given number of digits at the given position, or -1 if any is not a digit */
+  private static int digits(String value, int position, int count) {
+    int result = 0;
+    for (int i = position; i < position + count; i++) {
+      char digit = value.charAt(i);
+      if (!isDigit(digit)) {
+        return -1;
+      }
+      result = result * 10 + (digit - '0');
+    }
+    return result;
+  }
+
+  private static boolean isDigit(char value) {
+    return value >= '0' && value <= '9';
+  }
+
+  private static boolean isLeapYear(int year) {
+    return (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /* same as LocalDate.toEpochDay, for years 0 to 9999 */
+  private static long toEpochDay(int year, int month, int day) {
+    long total = 365L * year;
+    total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+    total += (367 * month - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total--;
+      if (!isLeapYear(year)) {
+        total--;
+      }
+    }
+    return total - DAYS_0000_TO_1970;
+  }
+
+  private static RuntimeException unknownFormat(String dateTimeStr) {
+    return new RuntimeException("Unknown date-time format:" + dateTimeStr);
+  }
 }
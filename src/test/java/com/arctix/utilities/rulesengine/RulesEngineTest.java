@@ -7,8 +7,11 @@ package com.arctix.utilities.rulesengine;
 import static java.util.Objects.nonNull;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 import com.arctix.utilities.rulesengine.datasources.DataFetchService;
@@ -112,6 +115,277 @@ public class RulesEngineTest extends AbstractTest {
     assertEquals("feature1", result.get(0).getFeature());
   }
 
+  @Test
+  public void testExecuteRules_SinglePass() {
+
+    // given
+    Rules rules = mockedRules();
+    rules.setFetchMode(FetchMode.SINGLE_PASS);
+    when(rulesLoader.load(anyString())).thenReturn(rules);
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    result.forEach(evalResult -> assertEquals("true", evalResult.getReturnValue()));
+    verify(dataService, times(1)).fetchData(anyMap(), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_SinglePassForDataSource() {
+
+    // given
+    when(dataService.getFetchMode(anyString()))
+        .thenAnswer(
+            invocation ->
+                "ds2".equals(invocation.getArgument(0)) ? FetchMode.SINGLE_PASS : FetchMode.LAZY);
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    verify(dataService)
+        .fetchData(argThat(params -> params.keySet().equals(setOf("ds1", "ds2"))), anyMap());
+    verify(dataService)
+        .fetchData(argThat(params -> params.keySet().equals(setOf("ds3"))), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_Speculative() {
+
+    // given
+    Rules rules = mockedRules();
+    rules.setFetchMode(FetchMode.SPECULATIVE);
+    when(rulesLoader.load(anyString())).thenReturn(rules);
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    result.forEach(evalResult -> assertEquals("true", evalResult.getReturnValue()));
+    verify(dataService)
+        .fetchData(argThat(params -> params.keySet().equals(setOf("ds1"))), anyMap());
+    verify(dataService)
+        .fetchData(argThat(params -> params.keySet().equals(setOf("ds2", "ds3"))), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_SpeculativeDiscarded() {
+
+    // given
+    Rules rules = new Rules(Arrays.asList(mockedRules().getFeatures().get(0)));
+    rules.setFetchMode(FetchMode.SPECULATIVE);
+    when(rulesLoader.load(anyString())).thenReturn(rules);
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-fail", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(0, result.size());
+    verify(dataService, times(2)).fetchData(anyMap(), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_SpeculativeCancelledOnFailure() {
+
+    // given
+    Rules rules = mockedRules();
+    rules.setFetchMode(FetchMode.SPECULATIVE);
+    when(rulesLoader.load(anyString())).thenReturn(rules);
+    CompletableFuture<DataFetchResult> speculativeFetch = new CompletableFuture<>();
+    CompletableFuture<DataFetchResult> failedFetch = new CompletableFuture<>();
+    failedFetch.completeExceptionally(new IllegalStateException("Data Source Error"));
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenAnswer(
+            invocation ->
+                ((Map<?, ?>) invocation.getArgument(0)).containsKey("ds1")
+                    ? failedFetch
+                    : speculativeFetch);
+
+    // when
+    CompletableFuture<List<RuleEvaluationResult>> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>());
+
+    // then
+    assertTrue(result.isCompletedExceptionally());
+    assertTrue(speculativeFetch.isCancelled());
+  }
+
+  @Test
+  public void testExecuteRules_Deferred() {
+
+    // given
+    when(dataService.getFetchMode(anyString()))
+        .thenAnswer(
+            invocation ->
+                "ds3".equals(invocation.getArgument(0)) ? FetchMode.DEFERRED : FetchMode.LAZY);
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    result.forEach(evalResult -> assertEquals("true", evalResult.getReturnValue()));
+    verify(dataService)
+        .fetchData(argThat(params -> params.keySet().equals(setOf("ds2"))), anyMap());
+    verify(dataService)
+        .fetchData(argThat(params -> params.keySet().equals(setOf("ds3"))), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_DeferredRuledOut() {
+
+    // given
+    when(dataService.getFetchMode(anyString()))
+        .thenAnswer(
+            invocation ->
+                "ds3".equals(invocation.getArgument(0)) ? FetchMode.DEFERRED : FetchMode.LAZY);
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-fail", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    result.forEach(evalResult -> assertEquals("false", evalResult.getReturnValue()));
+    verify(dataService, times(2)).fetchData(anyMap(), anyMap());
+    verify(dataService, never())
+        .fetchData(argThat(params -> params.containsKey("ds3")), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_PostConditions() {
+
+    // given
+    when(rulesLoader.load(anyString())).thenReturn(mockedRulesWithPostCondition("p-one"));
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    verify(dataService, times(3)).fetchData(anyMap(), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_FailPostCondition() {
+
+    // given
+    when(rulesLoader.load(anyString())).thenReturn(mockedRulesWithPostCondition("p-fail"));
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(1, result.size());
+    assertEquals("feature1", result.get(0).getFeature());
+    verify(dataService, times(3)).fetchData(anyMap(), anyMap());
+  }
+
+  @Test
+  public void testExecuteRules_OnlyPostConditions() {
+
+    // given
+    Rules rules = mockedRulesWithPostCondition("p-one");
+    rules.getFeatures().get(1).getRequirements().setConditions(new ArrayList<>());
+    when(rulesLoader.load(anyString())).thenReturn(rules);
+    when(dataService.fetchData(anyMap(), anyMap()))
+        .thenReturn(CompletableFuture.completedFuture(mockDataSet("p-one", "c-two", "c-three")));
+
+    // when
+    List<RuleEvaluationResult> result =
+        rulesEngine.executeRules("fake-rules", new HashMap<>()).join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    assertEquals("feature2", result.get(1).getFeature());
+  }
+
+  @Test
+  public void testExecuteRulesInBatch() {
+
+    // given
+    when(dataService.fetchDataInBatch(anyList(), anyList()))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                Arrays.asList(
+                    mockDataSet("p-one", "c-two", "c-three"),
+                    mockDataSet("p-fail", "c-two", "c-three"))));
+
+    // when
+    List<List<RuleEvaluationResult>> result =
+        rulesEngine
+            .executeRulesInBatch("fake-rules", Arrays.asList(new HashMap<>(), new HashMap<>()))
+            .join();
+
+    // then
+    assertNotNull(result);
+    assertEquals(2, result.size());
+    assertEquals(2, result.get(0).size());
+    assertEquals(1, result.get(1).size());
+    assertEquals("feature2", result.get(1).get(0).getFeature());
+    verify(dataService, times(2)).fetchDataInBatch(anyList(), anyList());
+  }
+
+  @Test
+  public void testExecuteRules_InvalidRulesFailFuture() {
+
+    // given
+    EvaluationCondition invalidDate = new EvaluationCondition();
+    invalidDate.setType("data");
+    invalidDate.setKey("ds3:attribute3");
+    invalidDate.setAfter("yesterday");
+    Rules rules = mockedRules();
+    rules.getFeatures().get(1).getRequirements().setConditions(Arrays.asList(invalidDate));
+    when(rulesLoader.load(anyString())).thenReturn(rules);
+
+    // when
+    CompletableFuture<List<RuleEvaluationResult>> first =
+        rulesEngine.executeRules("fake-rules", new HashMap<>());
+    CompletableFuture<List<RuleEvaluationResult>> second =
+        rulesEngine.executeRules("fake-rules", new HashMap<>());
+
+    // then
+    assertTrue(first.isCompletedExceptionally());
+    assertTrue(second.isCompletedExceptionally());
+    verify(dataService, never()).fetchData(anyMap(), anyMap());
+  }
+
   @Test
   public void testGetAttributesBySource_ForCondition() {
     // given
@@ -204,6 +478,21 @@ public class RulesEngineTest extends AbstractTest {
     return new Rules(Arrays.asList(feature1, feature2));
   }
 
+  private Rules mockedRulesWithPostCondition(String value) {
+    EvaluationCondition postCondition = new EvaluationCondition();
+    postCondition.setType("data");
+    postCondition.setKey("ds1:attribute1");
+    postCondition.setEquals(value);
+
+    Rules rules = mockedRules();
+    rules.getFeatures().get(1).getRequirements().setPostConditions(Arrays.asList(postCondition));
+    return rules;
+  }
+
+  private Set<String> setOf(String... dataSources) {
+    return new HashSet<>(Arrays.asList(dataSources));
+  }
+
   private DataFetchResult mockDataSet(String attr1, String attr2, String attr3) {
     return mockDataSet(attr1, attr2, attr3, null);
   }
@@ -10,9 +10,23 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import okhttp3.Call;
 import okhttp3.Credentials;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -97,6 +111,345 @@ public class RemoteConfigProviderTest {
     assertEquals(0, remoteConfigProvider.cache.getHitCount());
   }
 
+  @Test
+  public void testFetchConfigNotModified() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder().useCache(true).cacheExpiry(0).build());
+    List<Request> requests = new ArrayList<>();
+    remoteConfigProvider.client = mockHttpClient(requests, 200, 304);
+    byte[] first = remoteConfigProvider.getConfig(configUrl);
+    Thread.sleep(50);
+
+    // when
+    byte[] second = remoteConfigProvider.getConfig(configUrl);
+
+    // then
+    assertArrayEquals(first, second);
+    assertEquals(2, requests.size());
+    assertNull(requests.get(0).header("If-None-Match"));
+    assertEquals("\"v1\"", requests.get(1).header("If-None-Match"));
+    assertEquals(1, remoteConfigProvider.cache.count());
+  }
+
+  @Test
+  public void testFetchConfigStaleWhileRevalidate() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder()
+                .useCache(true)
+                .refreshAhead(true)
+                .cacheExpiry(0)
+                .build());
+    List<Request> requests = new CopyOnWriteArrayList<>();
+    remoteConfigProvider.client = mockHttpClient(requests, 200);
+    byte[] first = remoteConfigProvider.getConfig(configUrl);
+    Thread.sleep(50);
+
+    // when
+    byte[] second = remoteConfigProvider.getConfig(configUrl);
+
+    // then
+    assertArrayEquals(first, second);
+    awaitRequests(requests, 2);
+  }
+
+  @Test
+  public void testFetchConfigRefreshAhead() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder()
+                .useCache(true)
+                .refreshAhead(true)
+                .cacheExpiry(1)
+                .build());
+    List<Request> requests = new CopyOnWriteArrayList<>();
+    remoteConfigProvider.client = mockHttpClient(requests, 200);
+
+    // when
+    remoteConfigProvider.getConfig(configUrl);
+
+    // then - refreshed before expiry, and only while it is requested
+    awaitRequests(requests, 2);
+    Thread.sleep(100);
+    assertNotNull(remoteConfigProvider.getConfig(configUrl));
+    assertEquals(2, requests.size());
+  }
+
+  @Test
+  public void testFetchConfigRefreshNotHeldUpBySlowUrl() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder()
+                .useCache(true)
+                .refreshAhead(true)
+                .cacheExpiry(0)
+                .build());
+    String slowUrl = configUrl + "/slow";
+    List<Request> requests = new CopyOnWriteArrayList<>();
+    CountDownLatch released = new CountDownLatch(1);
+    OkHttpClient client = mock(OkHttpClient.class);
+    when(client.newCall(any()))
+        .thenAnswer(
+            invocation -> {
+              Request request = invocation.getArgument(0);
+              boolean slow = request.url().toString().equals(slowUrl) && requests.size() >= 2;
+              requests.add(request);
+              Call call = mock(Call.class);
+              when(call.execute())
+                  .thenAnswer(
+                      execution -> {
+                        if (slow) {
+                          released.await();
+                        }
+                        return response(request, 200);
+                      });
+              return call;
+            });
+    remoteConfigProvider.client = client;
+    remoteConfigProvider.getConfig(slowUrl);
+    remoteConfigProvider.getConfig(configUrl);
+    Thread.sleep(50);
+
+    // when
+    assertNotNull(remoteConfigProvider.getConfig(slowUrl)); // stale, refresh hangs
+    assertNotNull(remoteConfigProvider.getConfig(configUrl)); // stale
+
+    // then
+    awaitRequests(requests, 4);
+    long timeout = System.currentTimeMillis() + 5000;
+    while (remoteConfigProvider.cache.get(configUrl) == null) {
+      assertTrue("Config not refreshed", System.currentTimeMillis() < timeout);
+      Thread.sleep(10);
+    }
+    released.countDown();
+  }
+
+  @Test
+  public void testFetchConfigCollapsesConcurrentRequests() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(new RemoteConfigProperties.Builder().useCache(true).build());
+    List<Request> requests = new CopyOnWriteArrayList<>();
+    CountDownLatch released = new CountDownLatch(1);
+    OkHttpClient client = mock(OkHttpClient.class);
+    when(client.newCall(any()))
+        .thenAnswer(
+            invocation -> {
+              Request request = invocation.getArgument(0);
+              requests.add(request);
+              Call call = mock(Call.class);
+              when(call.execute())
+                  .thenAnswer(
+                      execution -> {
+                        released.await();
+                        return response(request, 200);
+                      });
+              return call;
+            });
+    remoteConfigProvider.client = client;
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // when
+    List<Future<byte[]>> results = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      results.add(executor.submit(() -> remoteConfigProvider.getConfig(configUrl)));
+    }
+    long timeout = System.currentTimeMillis() + 5000;
+    while (remoteConfigProvider.getCollapsedRequestCount() < 3) {
+      assertTrue("Requests not collapsed", System.currentTimeMillis() < timeout);
+      Thread.sleep(10);
+    }
+    released.countDown();
+
+    // then
+    byte[] content = results.get(0).get();
+    for (Future<byte[]> result : results) {
+      assertSame(content, result.get());
+    }
+    assertEquals(1, requests.size());
+    assertEquals(3, remoteConfigProvider.getCollapsedRequestCount());
+    executor.shutdown();
+  }
+
+  @Test
+  public void testFetchConfigNotFetchedAgainAfterConcurrentFetch() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(new RemoteConfigProperties.Builder().useCache(true).build());
+    List<Request> requests = new CopyOnWriteArrayList<>();
+    remoteConfigProvider.client = mockHttpClient(requests, 200);
+    int rounds = 50;
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    // when
+    for (int round = 0; round < rounds; round++) {
+      String url = configUrl + "?round=" + round;
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<byte[]>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        results.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return remoteConfigProvider.getConfig(url);
+                }));
+      }
+      start.countDown();
+      for (Future<byte[]> result : results) {
+        assertArrayEquals("{}".getBytes(), result.get());
+      }
+    }
+
+    // then
+    assertEquals(rounds, requests.size());
+    executor.shutdown();
+  }
+
+  @Test
+  public void testFetchConfigCachedOffHeap() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder().useCache(true).offHeapCache(true).build());
+    List<Request> requests = new ArrayList<>();
+    remoteConfigProvider.client = mockHttpClient(requests, 200);
+    remoteConfigProvider.getConfig(configUrl);
+
+    // when
+    ByteBuffer result = remoteConfigProvider.getConfigBuffer(configUrl);
+
+    // then
+    assertTrue(result.isDirect());
+    assertArrayEquals("{}".getBytes(), remoteConfigProvider.getConfig(configUrl));
+    assertEquals(1, requests.size());
+  }
+
+  @Test
+  public void testFetchConfigParsedOncePerCachedVersion() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder()
+                .useCache(true)
+                .offHeapCache(true)
+                .cacheExpiry(0)
+                .build());
+    List<Request> requests = new ArrayList<>();
+    remoteConfigProvider.client = mockHttpClient(requests, 200, 304);
+    List<ByteBuffer> parsed = new ArrayList<>();
+    Function<ByteBuffer, String> parser =
+        buffer -> {
+          parsed.add(buffer);
+          return StandardCharsets.UTF_8.decode(buffer).toString();
+        };
+    String first = remoteConfigProvider.getConfig(configUrl, String.class, parser);
+    Thread.sleep(50);
+
+    // when
+    String second = remoteConfigProvider.getConfig(configUrl, String.class, parser);
+
+    // then
+    assertEquals("{}", first);
+    assertSame(first, second);
+    assertEquals(2, requests.size());
+    assertEquals(1, parsed.size());
+    assertTrue(parsed.get(0).isDirect());
+    assertTrue(parsed.get(0).isReadOnly());
+  }
+
+  @Test
+  public void testFetchConfigLargerThanCache() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder().useCache(true).cacheSize(10, 1).build());
+    List<Request> requests = new ArrayList<>();
+    remoteConfigProvider.client = mockHttpClient(requests, 200);
+
+    // when
+    remoteConfigProvider.getConfig(configUrl);
+    remoteConfigProvider.getConfig(configUrl);
+
+    // then - the 2 byte config is not kept in a 1 byte cache
+    assertEquals(0, remoteConfigProvider.cache.count());
+    assertEquals(2, requests.size());
+  }
+
+  @Test
+  public void testFetchConfigLargerThanCacheKeepsOtherConfigs() throws Exception {
+    // given
+    RemoteConfigProvider remoteConfigProvider =
+        new RemoteConfigProvider(
+            new RemoteConfigProperties.Builder().useCache(true).cacheSize(10, 4).build());
+    String largeUrl = configUrl + "/large";
+    OkHttpClient client = mock(OkHttpClient.class);
+    when(client.newCall(any()))
+        .thenAnswer(
+            invocation -> {
+              Request request = invocation.getArgument(0);
+              boolean large = request.url().toString().equals(largeUrl);
+              Call call = mock(Call.class);
+              when(call.execute()).thenReturn(response(request, 200, large ? "{\"a\":1}" : "{}"));
+              return call;
+            });
+    remoteConfigProvider.client = client;
+    remoteConfigProvider.getConfig(configUrl);
+
+    // when
+    byte[] result = remoteConfigProvider.getConfig(largeUrl);
+
+    // then
+    assertArrayEquals("{\"a\":1}".getBytes(), result);
+    assertEquals(1, remoteConfigProvider.cache.count());
+    assertNotNull(remoteConfigProvider.cache.get(configUrl));
+    assertNull(remoteConfigProvider.cache.get(largeUrl));
+  }
+
+  private static void awaitRequests(List<Request> requests, int count) throws Exception {
+    long timeout = System.currentTimeMillis() + 5000;
+    while (requests.size() < count) {
+      assertTrue("Config not refreshed", System.currentTimeMillis() < timeout);
+      Thread.sleep(10);
+    }
+  }
+
+  private OkHttpClient mockHttpClient(List<Request> requests, int... statusCodes)
+      throws IOException {
+    OkHttpClient client = mock(OkHttpClient.class);
+    when(client.newCall(any()))
+        .thenAnswer(
+            invocation -> {
+              Request request = invocation.getArgument(0);
+              requests.add(request);
+              Call call = mock(Call.class);
+              int statusCode = statusCodes[Math.min(requests.size(), statusCodes.length) - 1];
+              when(call.execute()).thenReturn(response(request, statusCode));
+              return call;
+            });
+    return client;
+  }
+
+  private static okhttp3.Response response(Request request, int statusCode) {
+    return response(request, statusCode, "{}");
+  }
+
+  private static okhttp3.Response response(Request request, int statusCode, String body) {
+    return new okhttp3.Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(statusCode)
+        .message("status " + statusCode)
+        .header("ETag", "\"v1\"")
+        .body(ResponseBody.create(MediaType.get("application/json"), body))
+        .build();
+  }
+
   private OkHttpClient mockHttpClient() throws IOException {
     OkHttpClient client = mock(OkHttpClient.class);
     Call call = mock(Call.class);
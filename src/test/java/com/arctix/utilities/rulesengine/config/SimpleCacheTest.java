@@ -6,6 +6,10 @@ package com.arctix.utilities.rulesengine.config;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -90,4 +94,177 @@ public class SimpleCacheTest {
     assertNotNull(cache.get("k" + (cache.maxEntries))); // earliest
     assertNotNull(cache.get("k" + (cache.maxEntries + 49))); // latest
   }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() {
+    // given
+    SimpleCache cache = new SimpleCache(2);
+    cache.add("k1", sampleContent);
+    cache.add("k2", sampleContent);
+    cache.get("k1");
+
+    // when
+    cache.add("k3", sampleContent);
+
+    // then
+    assertEquals(2, cache.count());
+    assertNotNull(cache.get("k1"));
+    assertNull(cache.get("k2"));
+    assertNotNull(cache.get("k3"));
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(3, cache.getLoadCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testAddAndPurgeBySize() {
+    // given
+    SimpleCache cache = new SimpleCache(10, 2L * sampleContent.length);
+    cache.add("k1", sampleContent);
+    cache.add("k2", sampleContent);
+
+    // when
+    cache.add("k1", sampleContent); // replacing does not grow the cache
+    cache.add("k3", sampleContent);
+
+    // then
+    assertEquals(2, cache.count());
+    assertEquals(2L * sampleContent.length, cache.byteCount());
+    assertNull(cache.get("k2"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testClearAndAdd() {
+    // given
+    SimpleCache cache = new SimpleCache(2);
+    cache.add("k1", sampleContent);
+    cache.add("k2", sampleContent);
+
+    // when
+    cache.clear();
+    cache.add("k3", sampleContent);
+    cache.add("k4", sampleContent);
+
+    // then
+    assertEquals(2, cache.count());
+    assertEquals(2L * sampleContent.length, cache.byteCount());
+    assertNotNull(cache.get("k3"));
+    assertNotNull(cache.get("k4"));
+    assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testAddLargerThanMaxBytes() {
+    // given
+    SimpleCache cache = new SimpleCache(10, sampleContent.length + 5L);
+    cache.add("k1", sampleContent);
+    cache.add("k2", "small".getBytes());
+
+    // when
+    cache.add("k1", "this is some larger content".getBytes());
+
+    // then - the previous content of k1 is not kept either
+    assertEquals(1, cache.count());
+    assertNull(cache.get("k1"));
+    assertNotNull(cache.get("k2"));
+    assertEquals("small".length(), cache.byteCount());
+  }
+
+  @Test
+  public void testRenew() throws Exception {
+    // given
+    SimpleCache cache = new SimpleCache(10, Long.MAX_VALUE, true);
+    cache.add("k1", sampleContent, 0, 300);
+    ByteBuffer cached = cache.getBuffer("k1", true);
+    Thread.sleep(50);
+
+    // when
+    boolean renewed = cache.renew("k1", 300, 300);
+
+    // then
+    assertTrue(renewed);
+    assertFalse(cache.renew("k2", 300, 300));
+    assertEquals(cached, cache.getBuffer("k1"));
+    assertEquals(1, cache.getLoadCount());
+    assertEquals(sampleContent.length, cache.byteCount());
+  }
+
+  @Test
+  public void testAddAndPurgeStale() throws Exception {
+    // given
+    SimpleCache cache = new SimpleCache();
+    cache.add("k1", sampleContent, 0, 0);
+    Thread.sleep(50);
+
+    // when
+    cache.add("k2", sampleContent);
+
+    // then
+    assertEquals(1, cache.count());
+    assertNull(cache.get("k1", true));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testAddAndGetOffHeap() {
+    // given
+    SimpleCache cache = new SimpleCache(10, Long.MAX_VALUE, true);
+    cache.add("k1", sampleContent);
+
+    // when
+    ByteBuffer buffer = cache.getBuffer("k1");
+    byte[] result = cache.get("k1");
+
+    // then
+    assertTrue(buffer.isDirect());
+    assertTrue(buffer.isReadOnly());
+    assertEquals(ByteBuffer.wrap(sampleContent), buffer);
+    assertArrayEquals(sampleContent, result);
+    assertNotSame(sampleContent, result);
+    assertEquals(sampleContent.length, cache.byteCount());
+    assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void testGetBufferReadOnly() {
+    // given
+    SimpleCache cache = new SimpleCache();
+    cache.add("k1", sampleContent);
+
+    // when
+    ByteBuffer buffer = cache.getBuffer("k1");
+
+    // then
+    assertTrue(buffer.isReadOnly());
+    assertFalse(buffer.hasArray());
+    assertEquals(ByteBuffer.wrap(sampleContent), buffer);
+  }
+
+  @Test
+  public void testGetParsed() throws Exception {
+    // given
+    SimpleCache cache = new SimpleCache(10, Long.MAX_VALUE, true);
+    cache.add("k1", sampleContent, 0, 300);
+    AtomicInteger parseCount = new AtomicInteger();
+    Function<ByteBuffer, String> parser =
+        buffer -> {
+          parseCount.incrementAndGet();
+          return StandardCharsets.UTF_8.decode(buffer).toString();
+        };
+
+    // when
+    String first = cache.getParsed("k1", true, String.class, parser);
+    cache.renew("k1", 300, 300);
+    String second = cache.getParsed("k1", false, String.class, parser);
+    cache.add("k1", "some other content".getBytes());
+    String third = cache.getParsed("k1", false, String.class, parser);
+
+    // then
+    assertEquals("this is some content", first);
+    assertSame(first, second);
+    assertEquals("some other content", third);
+    assertEquals(2, parseCount.get());
+    assertNull(cache.getParsed("k2", true, String.class, parser));
+  }
 }
@@ -0,0 +1,187 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.arctix.utilities.rulesengine.datasources.models.DataFetchingContext;
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DataFetchBatcherTest {
+
+  private ScheduledExecutorService scheduler;
+
+  private CountingBatchAdaptor adaptor;
+
+  @Before
+  public void setUp() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    adaptor = new CountingBatchAdaptor();
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testFetch_BatchesRequestsWithinWindow() {
+    // given
+    DataFetchBatcher batcher = new DataFetchBatcher("batch", adaptor, 100, 50, scheduler);
+
+    // when
+    List<CompletableFuture<DataSet>> results = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      results.add(batcher.fetch(getContext("u" + i)));
+    }
+
+    // then
+    for (int i = 0; i < 5; i++) {
+      assertEquals("u" + i, getUserId(results.get(i).join()));
+    }
+    assertEquals(1, adaptor.batchCount.get());
+    assertEquals(1, batcher.getBatchCount());
+    assertEquals(5, batcher.getFetchCount());
+  }
+
+  @Test
+  public void testFetch_SendsBatchWhenFull() {
+    // given
+    DataFetchBatcher batcher = new DataFetchBatcher("batch", adaptor, 60000, 3, scheduler);
+
+    // when
+    List<CompletableFuture<DataSet>> results = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      results.add(batcher.fetch(getContext("u" + i)));
+    }
+
+    // then
+    assertTrue(results.stream().allMatch(CompletableFuture::isDone));
+    assertEquals("u5", getUserId(results.get(5).join()));
+    assertEquals(2, adaptor.batchCount.get());
+  }
+
+  @Test
+  public void testFetch_FullBatchCancelsItsScheduledFlush() throws Exception {
+    // given
+    AtomicInteger executed = new AtomicInteger();
+    DataFetchBatcher batcher =
+        new DataFetchBatcher(
+            "batch",
+            adaptor,
+            200,
+            2,
+            scheduler,
+            runnable -> {
+              executed.incrementAndGet();
+              runnable.run();
+            });
+    batcher.fetch(getContext("u0"));
+    Thread.sleep(100);
+    batcher.fetch(getContext("u1")); // sent for being full
+
+    // when
+    CompletableFuture<DataSet> result = batcher.fetch(getContext("u2"));
+    Thread.sleep(150);
+
+    // then - not sent by the window of the first batch
+    assertFalse(result.isDone());
+    assertEquals("u2", getUserId(result.join()));
+    assertEquals(2, adaptor.batchCount.get());
+    assertEquals(1, executed.get());
+  }
+
+  @Test
+  public void testFetch_FlushSendsPendingRequests() {
+    // given
+    DataFetchBatcher batcher = new DataFetchBatcher("batch", adaptor, 60000, 50, scheduler);
+    CompletableFuture<DataSet> result = batcher.fetch(getContext("u1"));
+
+    // when
+    batcher.flush();
+
+    // then
+    assertEquals("u1", getUserId(result.join()));
+    assertEquals(1, adaptor.batchCount.get());
+  }
+
+  @Test(expected = CompletionException.class)
+  public void testFetch_AdaptorThrowsException() {
+    // given
+    DataFetchBatcher batcher =
+        new DataFetchBatcher(
+            "batch",
+            new CountingBatchAdaptor() {
+              @Override
+              public CompletableFuture<List<DataSet>> fetchAll(
+                  List<DataFetchingContext> contexts) {
+                throw new IllegalArgumentException("Data Source Error");
+              }
+            },
+            60000,
+            2,
+            scheduler);
+
+    // when
+    batcher.fetch(getContext("u1"));
+    CompletableFuture<DataSet> result = batcher.fetch(getContext("u2"));
+
+    // then
+    result.join();
+  }
+
+  private DataFetchingContext getContext(String userId) {
+    return new DataFetchingContext(
+        Collections.singletonList(new ParameterKey("batch:user-id")),
+        Collections.singletonMap("id", userId));
+  }
+
+  private String getUserId(DataSet dataSet) {
+    return dataSet.getParameters("batch:user-id").get(0).getDataValue();
+  }
+
+  private static class CountingBatchAdaptor implements BatchDataSourceAdaptor {
+
+    AtomicInteger batchCount = new AtomicInteger();
+
+    @Override
+    public CompletableFuture<DataSet> fetch(DataFetchingContext dfe) {
+      return fetchAll(Collections.singletonList(dfe)).thenApply(dataSets -> dataSets.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<DataSet>> fetchAll(List<DataFetchingContext> contexts) {
+      batchCount.incrementAndGet();
+      return CompletableFuture.completedFuture(
+          contexts.stream()
+              .map(
+                  dfe ->
+                      new DataSet(
+                          Collections.singletonList(
+                              new Parameter(
+                                  "batch:user-id", (String) dfe.getUserData().get("id")))))
+              .collect(Collectors.toList()));
+    }
+  }
+}
@@ -6,18 +6,24 @@ package com.arctix.utilities.rulesengine.datasources;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import com.arctix.utilities.rulesengine.AbstractTest;
+import com.arctix.utilities.rulesengine.config.DataFetchProperties;
 import com.arctix.utilities.rulesengine.datasources.models.DataFetchResult;
 import com.arctix.utilities.rulesengine.datasources.models.DataFetchingContext;
 import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
 import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,6 +35,10 @@ public class DataFetchServiceTest extends AbstractTest {
 
   @Autowired DataFetchService service;
 
+  @Autowired BatchDataAdaptor batchDataAdaptor;
+
+  @Autowired GatedDataAdaptor gatedDataAdaptor;
+
   @Test
   public void testDataFetch_EmptyParams() {
     // given
@@ -102,6 +112,129 @@ public class DataFetchServiceTest extends AbstractTest {
     assertEquals(1, result.getDataSourceWithExceptions().size());
   }
 
+  @Test
+  public void testDataFetchInBatch() {
+    // given
+    Map<String, List<ParameterKey>> batchParams = getMockedParams();
+    batchParams.put("batch", Arrays.asList(new ParameterKey("batch:user-id")));
+    List<Map<String, List<ParameterKey>>> parametersByDataSource =
+        Arrays.asList(batchParams, getMockedParams(), batchParams);
+    List<Map<String, String>> userData =
+        Arrays.asList(
+            Collections.singletonMap("id", "u1"),
+            Collections.singletonMap("id", "u2"),
+            Collections.singletonMap("id", "u3"));
+    batchDataAdaptor.batchCount.set(0);
+
+    // when
+    List<DataFetchResult> result =
+        service.fetchDataInBatch(parametersByDataSource, userData).join();
+
+    // then
+    assertEquals(3, result.size());
+    assertEquals(1, batchDataAdaptor.batchCount.get());
+    assertEquals("u1", getUserId(result.get(0)));
+    assertEquals(0, result.get(1).getDataSet().getParameters("batch:user-id").size());
+    assertEquals("u3", getUserId(result.get(2)));
+    result.forEach(
+        dataFetchResult ->
+            assertEquals(
+                1,
+                dataFetchResult
+                    .getDataSet()
+                    .getParameters(new ParameterKey("user-profile:registration-date"))
+                    .size()));
+  }
+
+  @Test
+  public void testDataFetch_CoalescesIdenticalRequests() {
+    // given
+    Map<String, List<ParameterKey>> parametersByDataSource = new HashMap<>();
+    parametersByDataSource.put("gated", Arrays.asList(new ParameterKey("gated:user-id")));
+    Map<String, String> user1 = Collections.singletonMap("id", "u1");
+    Map<String, String> user2 = Collections.singletonMap("id", "u2");
+    DataFetchService coalescingService = newService(new DataFetchProperties.Builder().build());
+    gatedDataAdaptor.reset();
+    long coalesced = coalescingService.getCoalescedFetchCount();
+
+    // when
+    CompletableFuture<DataFetchResult> first =
+        coalescingService.fetchData(parametersByDataSource, user1);
+    CompletableFuture<DataFetchResult> second =
+        coalescingService.fetchData(parametersByDataSource, user1);
+    CompletableFuture<DataFetchResult> other =
+        coalescingService.fetchData(parametersByDataSource, user2);
+    gatedDataAdaptor.gate.complete(null);
+
+    // then
+    assertEquals("u1", getDataValue(first.join(), "gated:user-id"));
+    assertEquals("u1", getDataValue(second.join(), "gated:user-id"));
+    assertEquals("u2", getDataValue(other.join(), "gated:user-id"));
+    assertEquals(2, gatedDataAdaptor.fetchCount.get());
+    assertEquals(coalesced + 1, coalescingService.getCoalescedFetchCount());
+  }
+
+  @Test
+  public void testDataFetch_DoesNotShareRequestsWithoutIdentityResolver() {
+    // given
+    Map<String, List<ParameterKey>> parametersByDataSource = new HashMap<>();
+    parametersByDataSource.put("gated", Arrays.asList(new ParameterKey("gated:user-id")));
+    Map<String, String> user = Collections.singletonMap("id", "u1");
+    gatedDataAdaptor.reset();
+    long coalesced = service.getCoalescedFetchCount();
+
+    // when
+    CompletableFuture<DataFetchResult> first = service.fetchData(parametersByDataSource, user);
+    CompletableFuture<DataFetchResult> second = service.fetchData(parametersByDataSource, user);
+    gatedDataAdaptor.gate.complete(null);
+
+    // then
+    assertEquals("u1", getDataValue(first.join(), "gated:user-id"));
+    assertEquals("u1", getDataValue(second.join(), "gated:user-id"));
+    assertEquals(2, gatedDataAdaptor.fetchCount.get());
+    assertEquals(coalesced, service.getCoalescedFetchCount());
+  }
+
+  @Test
+  public void testDataFetch_CachesDataSource() {
+    // given
+    DataFetchService cachingService =
+        newService(new DataFetchProperties.Builder().cache("gated", 300, 50).build());
+    Map<String, List<ParameterKey>> parametersByDataSource = new HashMap<>();
+    parametersByDataSource.put("gated", Arrays.asList(new ParameterKey("gated:user-id")));
+    Map<String, String> user = Collections.singletonMap("id", "u1");
+    gatedDataAdaptor.reset();
+    gatedDataAdaptor.gate.complete(null);
+
+    // when
+    DataFetchResult first = cachingService.fetchData(parametersByDataSource, user).join();
+    DataFetchResult second = cachingService.fetchData(parametersByDataSource, user).join();
+
+    // then
+    assertEquals("u1", getDataValue(first, "gated:user-id"));
+    assertEquals("u1", getDataValue(second, "gated:user-id"));
+    assertEquals(1, gatedDataAdaptor.fetchCount.get());
+    assertEquals(1, cachingService.getCache("gated").getHitCount());
+    assertEquals(1, cachingService.getCache("gated").getMissCount());
+    assertNull(cachingService.getCache("user-profile"));
+  }
+
+  private DataFetchService newService(DataFetchProperties properties) {
+    DataFetchService newService = new DataFetchService();
+    newService.appContext = service.appContext;
+    newService.properties = properties;
+    newService.userIdentityResolver = userData -> userData.get("id");
+    return newService;
+  }
+
+  private String getUserId(DataFetchResult result) {
+    return getDataValue(result, "batch:user-id");
+  }
+
+  private String getDataValue(DataFetchResult result, String key) {
+    return result.getDataSet().getParameters(key).get(0).getDataValue();
+  }
+
   private Map<String, List<ParameterKey>> getMockedParams() {
     Map<String, List<ParameterKey>> paramMap = new HashMap<>();
     paramMap.put("user-profile", Arrays.asList(new ParameterKey("user-profile:registration-date")));
@@ -120,4 +253,52 @@ public class DataFetchServiceTest extends AbstractTest {
           });
     }
   }
+
+  @Component("gated-data-source-adaptor")
+  public static class GatedDataAdaptor implements DataSourceAdaptor {
+
+    AtomicInteger fetchCount = new AtomicInteger();
+
+    CompletableFuture<Void> gate = new CompletableFuture<>();
+
+    void reset() {
+      fetchCount.set(0);
+      gate = new CompletableFuture<>();
+    }
+
+    @Override
+    public CompletableFuture<DataSet> fetch(DataFetchingContext dfe) {
+      fetchCount.incrementAndGet();
+      return gate.thenApply(
+          unused ->
+              new DataSet(
+                  Collections.singletonList(
+                      new Parameter("gated:user-id", (String) dfe.getUserData().get("id")))));
+    }
+  }
+
+  @Component("batch-data-source-adaptor")
+  public static class BatchDataAdaptor implements BatchDataSourceAdaptor {
+
+    AtomicInteger batchCount = new AtomicInteger();
+
+    @Override
+    public CompletableFuture<DataSet> fetch(DataFetchingContext dfe) {
+      return fetchAll(Collections.singletonList(dfe)).thenApply(dataSets -> dataSets.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<DataSet>> fetchAll(List<DataFetchingContext> contexts) {
+      batchCount.incrementAndGet();
+      return CompletableFuture.completedFuture(
+          contexts.stream()
+              .map(
+                  dfe ->
+                      new DataSet(
+                          Collections.singletonList(
+                              new Parameter(
+                                  "batch:user-id", (String) dfe.getUserData().get("id")))))
+              .collect(Collectors.toList()));
+    }
+  }
 }
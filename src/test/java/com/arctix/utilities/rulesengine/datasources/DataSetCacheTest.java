@@ -0,0 +1,136 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DataSetCacheTest {
+
+  private final ParameterKey badgeLevel = new ParameterKey("user-profile:badge-level");
+
+  private final ParameterKey registrationDate = new ParameterKey("user-profile:registration-date");
+
+  @Test
+  public void testGet_ReturnsCachedParameters() {
+    // given
+    DataSetCache cache = new DataSetCache(300, 50);
+    cache.put("u1", Arrays.asList(badgeLevel, registrationDate), getDataSet());
+
+    // when
+    DataSet dataSet = new DataSet();
+    List<ParameterKey> missing =
+        cache.get("u1", Arrays.asList(badgeLevel, registrationDate), dataSet);
+
+    // then
+    assertTrue(missing.isEmpty());
+    assertEquals("GOLD", dataSet.getParameters(badgeLevel).get(0).getDataValue());
+    assertEquals(0, dataSet.getParameters(registrationDate).size());
+    assertEquals(2, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void testGet_ReturnsMissingKeys() {
+    // given
+    DataSetCache cache = new DataSetCache(300, 50);
+    cache.put("u1", Collections.singletonList(badgeLevel), getDataSet());
+
+    // when
+    List<ParameterKey> missingKey =
+        cache.get("u1", Arrays.asList(badgeLevel, registrationDate), new DataSet());
+    List<ParameterKey> otherUser =
+        cache.get("u2", Collections.singletonList(badgeLevel), new DataSet());
+
+    // then
+    assertEquals(Collections.singletonList(registrationDate), missingKey);
+    assertEquals(Collections.singletonList(badgeLevel), otherUser);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testGet_ExpiredEntries() throws InterruptedException {
+    // given
+    DataSetCache cache = new DataSetCache(0, 50);
+    cache.put("u1", Collections.singletonList(badgeLevel), getDataSet());
+    Thread.sleep(5);
+
+    // when
+    List<ParameterKey> missing =
+        cache.get("u1", Collections.singletonList(badgeLevel), new DataSet());
+
+    // then
+    assertEquals(1, missing.size());
+    assertEquals(0, cache.count());
+  }
+
+  @Test
+  public void testPut_EvictsOldestEntries() {
+    // given
+    DataSetCache cache = new DataSetCache(300, 10);
+
+    // when
+    for (int i = 0; i < 15; i++) {
+      cache.put("u" + i, Collections.singletonList(badgeLevel), getDataSet());
+    }
+
+    // then
+    assertTrue(cache.count() <= 10);
+    assertTrue(cache.getEvictionCount() >= 5);
+  }
+
+  @Test
+  public void testPut_EvictsInInsertionOrder() {
+    // given
+    DataSetCache cache = new DataSetCache(300, 10);
+    for (int i = 0; i < 10; i++) {
+      cache.put("u" + i, Collections.singletonList(badgeLevel), getDataSet());
+    }
+    cache.put("u0", Collections.singletonList(badgeLevel), getDataSet()); // put again
+
+    // when
+    cache.put("u10", Collections.singletonList(badgeLevel), getDataSet());
+
+    // then
+    assertEquals(10, cache.count());
+    assertEquals(1, cache.getEvictionCount());
+    List<ParameterKey> missing =
+        cache.get("u1", Collections.singletonList(badgeLevel), new DataSet());
+    assertEquals(1, missing.size());
+    missing = cache.get("u0", Collections.singletonList(badgeLevel), new DataSet());
+    assertEquals(0, missing.size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    // given
+    DataSetCache cache = new DataSetCache(300, 50);
+    cache.put("u1", Arrays.asList(badgeLevel, registrationDate), getDataSet());
+    cache.put("u2", Arrays.asList(badgeLevel, registrationDate), getDataSet());
+
+    // when
+    cache.invalidate("u1");
+
+    // then
+    assertEquals(2, cache.count());
+  }
+
+  private DataSet getDataSet() {
+    return new DataSet(
+        Collections.singletonList(new Parameter("user-profile:badge-level", "GOLD")));
+  }
+}
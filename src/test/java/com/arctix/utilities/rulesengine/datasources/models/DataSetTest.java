@@ -0,0 +1,69 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.datasources.models;
+
+import static org.junit.Assert.*;
+
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DataSetTest {
+
+  @Test
+  public void testGetParameters() {
+    // given
+    DataSet dataSet =
+        new DataSet(
+            Arrays.asList(
+                new Parameter("user-profile:badge-level", "GOLD"),
+                new Parameter("user-profile:badge-level", "SILVER"),
+                new Parameter("user-profile:badge-level", "GOLD"),
+                new Parameter("user-profile:registration-date", "2021-01-01")));
+
+    // then
+    assertEquals(3, dataSet.size());
+    assertEquals(2, dataSet.getParameters(new ParameterKey("user-profile:badge-level")).size());
+    assertEquals(1, dataSet.getParameters("user-profile:registration-date").size());
+    assertTrue(dataSet.getParameters("user-profile:last-login").isEmpty());
+  }
+
+  @Test
+  public void testAddAll() {
+    // given
+    DataSet dataSet = new DataSet();
+    dataSet.addParameter(new Parameter("user-profile:badge-level", "GOLD"));
+    DataSet anotherSet = new DataSet();
+    anotherSet.addParameter(new Parameter("user-profile:badge-level", "GOLD"));
+    anotherSet.addParameter(new Parameter("user-profile:badge-level", "SILVER"));
+    anotherSet.addParameter(new Parameter("system-data:date-time", "2021-01-01"));
+
+    // when
+    dataSet.addAll(anotherSet);
+
+    // then
+    assertEquals(3, dataSet.size());
+    assertEquals(2, dataSet.getParameters("user-profile:badge-level").size());
+    assertEquals(1, dataSet.getParameters("system-data:date-time").size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testReadOnly() {
+    // given
+    DataSet dataSet = new DataSet();
+    dataSet.addParameter(new Parameter("user-profile:badge-level", "GOLD"));
+
+    // when
+    DataSet readOnly = dataSet.readOnly();
+
+    // then
+    assertEquals(1, readOnly.getParameters("user-profile:badge-level").size());
+    readOnly.addParameter(new Parameter("user-profile:badge-level", "SILVER"));
+  }
+}
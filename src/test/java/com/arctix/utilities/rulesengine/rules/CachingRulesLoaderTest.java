@@ -0,0 +1,383 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static org.junit.Assert.*;
+
+import com.arctix.utilities.rulesengine.config.RulesCacheProperties;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import com.arctix.utilities.rulesengine.validation.RulesValidationException;
+import com.arctix.utilities.rulesengine.validation.RulesValidator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CachingRulesLoaderTest {
+
+  CountingRulesLoader fileLoader = new CountingRulesLoader();
+
+  @Test
+  public void testLoadFromCache() {
+    // given
+    CachingRulesLoader loader = new CachingRulesLoader(fileLoader);
+
+    // when
+    Rules first = loader.load("notification-business-rules");
+    Rules second = loader.load("notification-business-rules");
+
+    // then
+    assertNotNull(first);
+    assertSame(first, second);
+    assertEquals(1, fileLoader.loadCount);
+    assertEquals(1, loader.count());
+  }
+
+  @Test
+  public void testLoadExpired() throws Exception {
+    // given
+    CachingRulesLoader loader =
+        new CachingRulesLoader(fileLoader, new RulesCacheProperties.Builder().expiry(0).build());
+    loader.load("notification-business-rules");
+    Thread.sleep(50);
+
+    // when
+    loader.load("notification-business-rules");
+
+    // then
+    assertEquals(2, fileLoader.loadCount);
+  }
+
+  @Test
+  public void testLoadCompiledFromCache() throws IOException {
+    // given
+    Path file = Files.createTempFile("rules", ".snapshot");
+    file.toFile().deleteOnExit();
+    Rules rules = new RulesFileLoader().load("notification-business-rules");
+    Files.write(file, RulesSnapshot.toBytes(rules));
+    CachingRulesLoader loader = new CachingRulesLoader(new SnapshotRulesLoader());
+
+    // when
+    CompiledRules first = loader.loadCompiled("file:" + file).join();
+    CompiledRules second = loader.loadCompiled("file:" + file).join();
+    Rules loaded = loader.load("file:" + file);
+
+    // then
+    assertSame(first, second);
+    assertSame(first.getRules(), loaded);
+    assertEquals(rules.getFeatures().size(), first.getFeatures().size());
+    assertEquals(1, loader.count());
+  }
+
+  @Test
+  public void testLoadCompiled_CompilesRules() {
+    // given
+    CachingRulesLoader loader = new CachingRulesLoader(fileLoader);
+
+    // when
+    CompiledRules first = loader.loadCompiled("notification-business-rules").join();
+    CompiledRules second = loader.loadCompiled("notification-business-rules").join();
+
+    // then
+    assertSame(first, second);
+    assertSame(loader.load("notification-business-rules"), first.getRules());
+    assertEquals(1, fileLoader.loadCount);
+  }
+
+  @Test
+  public void testInvalidate() {
+    // given
+    CachingRulesLoader loader = new CachingRulesLoader(fileLoader);
+    Rules first = loader.load("notification-business-rules");
+
+    // when
+    loader.invalidate("notification-business-rules");
+    Rules second = loader.load("notification-business-rules");
+
+    // then
+    assertNotSame(first, second);
+    assertEquals(2, fileLoader.loadCount);
+  }
+
+  @Test
+  public void testMaxEntries() throws Exception {
+    // given
+    CachingRulesLoader loader =
+        new CachingRulesLoader(fileLoader, new RulesCacheProperties.Builder().maxEntries(1).build());
+    loader.load("notification-business-rules");
+    Thread.sleep(5);
+
+    // when
+    loader.load("notification-business-rules-tests");
+
+    // then
+    assertEquals(1, loader.count());
+    loader.load("notification-business-rules-tests");
+    assertEquals(2, fileLoader.loadCount);
+  }
+
+  @Test
+  public void testMaxEntries_EvictsOldestLoaded() throws Exception {
+    // given
+    Path directory = Files.createTempDirectory("rules");
+    for (String name : new String[] {"a", "b", "c"}) {
+      writeRules(directory.resolve(name + ".json"), name);
+    }
+    RulesCacheProperties properties = new RulesCacheProperties.Builder().maxEntries(2).build();
+    CachingRulesLoader loader = new CachingRulesLoader(fileLoader, properties);
+    loader.load("file:" + directory.resolve("a.json"));
+    loader.load("file:" + directory.resolve("b.json"));
+
+    // when
+    loader.load("file:" + directory.resolve("c.json"));
+
+    // then
+    assertEquals(2, loader.count());
+    loader.load("file:" + directory.resolve("b.json"));
+    loader.load("file:" + directory.resolve("c.json"));
+    assertEquals(3, fileLoader.loadCount);
+    loader.load("file:" + directory.resolve("a.json"));
+    assertEquals(4, fileLoader.loadCount);
+  }
+
+  @Test
+  public void testReloadFailureServesPreviousRules() throws Exception {
+    // given
+    CachingRulesLoader loader =
+        new CachingRulesLoader(fileLoader, new RulesCacheProperties.Builder().expiry(0).build());
+    Rules first = loader.load("notification-business-rules");
+    Thread.sleep(50);
+    fileLoader.fail = true;
+
+    // when
+    Rules second = loader.load("notification-business-rules");
+
+    // then
+    assertSame(first, second);
+  }
+
+  @Test
+  public void testWatch_ReloadsChangedFile() throws Exception {
+    // given
+    Path file = Files.createTempDirectory("rules").resolve("rules.json");
+    writeRules(file, "feature1");
+    CachingRulesLoader loader =
+        new CachingRulesLoader(fileLoader, new RulesCacheProperties.Builder().watch(true).build());
+    Rules first = loader.load("file:" + file);
+
+    // when
+    writeRules(file, "feature2");
+
+    // then
+    long timeout = System.currentTimeMillis() + 30000;
+    while (getFeatureName(loader.load("file:" + file)).equals("feature1")) {
+      assertTrue("Rules not reloaded", System.currentTimeMillis() < timeout);
+      Thread.sleep(50);
+    }
+    assertEquals("feature2", getFeatureName(loader.load("file:" + file)));
+    assertEquals("feature1", getFeatureName(first));
+    loader.cleanUp();
+  }
+
+  @Test
+  public void testWatch_ReloadsOnceFileStopsChanging() throws Exception {
+    // given
+    Path file = Files.createTempDirectory("rules").resolve("rules.json");
+    writeRules(file, "feature1");
+    CachingRulesLoader loader =
+        new CachingRulesLoader(fileLoader, new RulesCacheProperties.Builder().watch(true).build());
+    loader.load("file:" + file);
+
+    // when
+    for (int feature = 2; feature <= 5; feature++) {
+      writeRules(file, "feature" + feature);
+      Thread.sleep(20);
+    }
+
+    // then
+    long timeout = System.currentTimeMillis() + 30000;
+    while (!getFeatureName(loader.load("file:" + file)).equals("feature5")) {
+      assertTrue("Rules not reloaded", System.currentTimeMillis() < timeout);
+      Thread.sleep(50);
+    }
+    Thread.sleep(RulesFileWatcher.QUIET_PERIOD_MILLIS * 2);
+    assertEquals(2, fileLoader.loadCount);
+    assertEquals("rules-file-reload", fileLoader.lastThread);
+    loader.cleanUp();
+  }
+
+  @Test
+  public void testWatch_UnwatchableFileExpires() throws Exception {
+    // given
+    String path = "file:" + Files.createTempDirectory("rules").resolve("missing/rules.json");
+    RulesFileLoader missingFileLoader =
+        new CountingRulesLoader() {
+          @Override
+          public Rules load(String path) {
+            return super.load("notification-business-rules");
+          }
+        };
+    CachingRulesLoader loader =
+        new CachingRulesLoader(
+            missingFileLoader, new RulesCacheProperties.Builder().watch(true).expiry(0).build());
+    Rules first = loader.load(path);
+    Thread.sleep(50);
+
+    // when
+    Rules second = loader.load(path);
+
+    // then
+    assertNotSame(first, second);
+    loader.cleanUp();
+  }
+
+  @Test
+  public void testCleanUp_StopsWatching() throws Exception {
+    // given
+    Path file = Files.createTempDirectory("rules").resolve("rules.json");
+    writeRules(file, "feature1");
+    long watchers = countWatcherThreads();
+    CachingRulesLoader loader =
+        new CachingRulesLoader(fileLoader, new RulesCacheProperties.Builder().watch(true).build());
+    loader.load("file:" + file);
+    assertEquals(watchers + 1, countWatcherThreads());
+
+    // when
+    loader.cleanUp();
+
+    // then
+    long timeout = System.currentTimeMillis() + 5000;
+    while (countWatcherThreads() > watchers) {
+      assertTrue("Watcher not stopped", System.currentTimeMillis() < timeout);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testReload_InvalidRulesServesPreviousRules() throws Exception {
+    // given
+    Path file = Files.createTempDirectory("rules").resolve("rules.json");
+    writeRules(file, "feature1");
+    writeRules(file.resolveSibling("rules-tests.json"), "test1");
+    CachingRulesLoader loader = new CachingRulesLoader(fileLoader);
+    loader.setValidator(new FailingRulesValidator("invalid"));
+    Rules first = loader.load("file:" + file);
+
+    // when
+    writeRules(file, "invalid");
+    loader.reload("file:" + file);
+
+    // then
+    assertEquals(3, fileLoader.loadCount);
+    assertSame(first, loader.load("file:" + file));
+
+    // when
+    writeRules(file, "feature2");
+    loader.reload("file:" + file);
+
+    // then
+    assertEquals("feature2", getFeatureName(loader.load("file:" + file)));
+  }
+
+  @Test
+  public void testLoad_SlowLoadBlocksNeitherOtherPathsNorInvalidate() throws Exception {
+    // given
+    CachingRulesLoader loader = new CachingRulesLoader(fileLoader);
+    fileLoader.blockedPath = "notification-business-rules";
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      Future<Rules> first = executor.submit(() -> loader.load("notification-business-rules"));
+      Future<Rules> second = executor.submit(() -> loader.load("notification-business-rules"));
+      assertTrue(fileLoader.started.await(5, TimeUnit.SECONDS));
+
+      // when
+      Future<Rules> other =
+          executor.submit(() -> loader.load("notification-business-rules-tests"));
+      Future<?> invalidated =
+          executor.submit(() -> loader.invalidate("notification-business-rules"));
+
+      // then
+      assertNotNull(other.get(5, TimeUnit.SECONDS));
+      invalidated.get(5, TimeUnit.SECONDS);
+      fileLoader.release.countDown();
+      assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+      assertEquals(2, fileLoader.loadCount);
+    } finally {
+      fileLoader.release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  private static void writeRules(Path file, String featureName) throws IOException {
+    String rules = String.format("{'features': [{'name': '%s'}]}", featureName).replace('\'', '"');
+    Files.write(file, rules.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static long countWatcherThreads() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.isAlive() && thread.getName().equals("rules-file-watcher"))
+        .count();
+  }
+
+  private static String getFeatureName(Rules rules) {
+    return rules.getFeatures().get(0).getName();
+  }
+
+  /* fails validation of rules that have a feature with the given name */
+  private static class FailingRulesValidator extends RulesValidator {
+    final String invalidFeature;
+
+    FailingRulesValidator(String invalidFeature) {
+      this.invalidFeature = invalidFeature;
+    }
+
+    @Override
+    public void validateRules(Rules rules, Rules tests) throws RulesValidationException {
+      if (getFeatureName(rules).equals(invalidFeature)) {
+        throw new RulesValidationException("Business rule tests failed!");
+      }
+    }
+  }
+
+  private static class CountingRulesLoader extends RulesFileLoader {
+    volatile int loadCount;
+    volatile String lastThread;
+    boolean fail;
+    /* loads of this path wait until released */
+    String blockedPath;
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public Rules load(String path) {
+      synchronized (this) {
+        loadCount++;
+      }
+      lastThread = Thread.currentThread().getName();
+      if (fail) {
+        throw new RuntimeException("Unable to load file from location: " + path);
+      }
+      if (path.equals(blockedPath)) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return super.load(path);
+    }
+  }
+}
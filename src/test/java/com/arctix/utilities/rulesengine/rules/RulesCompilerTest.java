@@ -0,0 +1,215 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static org.junit.Assert.*;
+
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledCondition;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledFeature;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import com.arctix.utilities.rulesengine.rules.models.Requirements;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RulesCompilerTest {
+
+  RulesCompiler compiler = new RulesCompiler();
+
+  @Test
+  public void testCompile() {
+    // given
+    Rules rules = new RulesFileLoader().load("notification-business-rules");
+
+    // when
+    CompiledRules result = compiler.compile(rules);
+
+    // then
+    assertEquals(1, result.getFeatures().size());
+    CompiledFeature feature = result.getFeatures().get(0);
+    assertEquals("mailing_list_notification", feature.getName());
+    assertTrue(feature.hasPreConditions());
+    assertEquals(2, feature.getConditions(RulesEvaluator.Options.CONDITIONS_ONLY).size());
+    assertEquals("Y", feature.getReturnValue(true));
+    assertEquals("N", feature.getReturnValue(false));
+
+    Map<String, List<ParameterKey>> parameters =
+        result.getParametersByDataSource(RulesEvaluator.Options.CONDITIONS_ONLY);
+    assertEquals(1, parameters.size());
+    assertEquals(2, parameters.get("user-profile").size());
+  }
+
+  @Test
+  public void testCompile_SameRulesCompiledOnce() {
+    // given
+    Rules rules = new RulesFileLoader().load("notification-business-rules");
+
+    // when
+    CompiledRules first = compiler.compile(rules);
+    CompiledRules second = compiler.compile(rules);
+
+    // then
+    assertSame(first, second);
+  }
+
+  @Test
+  public void testCompile_FailureRemembered() {
+    // given
+    EvaluationCondition invalidDate = new EvaluationCondition();
+    invalidDate.setType("data");
+    invalidDate.setKey("user-profile:registration");
+    invalidDate.setBefore("yesterday");
+    Rules rules =
+        new Rules(
+            Arrays.asList(
+                new Feature(
+                    "feature1",
+                    new Requirements(new ArrayList<>(), Arrays.asList(invalidDate)))));
+
+    // when
+    CompletableFuture<CompiledRules> first = compiler.plan(rules);
+    CompletableFuture<CompiledRules> second = compiler.plan(rules);
+
+    // then
+    assertTrue(first.isCompletedExceptionally());
+    assertSame(first, second);
+    try {
+      compiler.compile(rules);
+      fail("Compiled rules with an invalid date");
+    } catch (DateTimeParseException expected) {
+      // thrown as is, rather than wrapped
+    }
+  }
+
+  @Test
+  public void testCompile_SharesIdenticalConditions() {
+    // given
+    Rules rules =
+        new Rules(
+            Arrays.asList(
+                newFeature("feature1", Arrays.asList("GOLD", "SILVER"), "BRONZE"),
+                newFeature("feature2", Arrays.asList("GOLD", "SILVER"), "PLATINUM")));
+
+    // when
+    CompiledRules result = compiler.compile(rules);
+
+    // then
+    List<CompiledCondition> first =
+        result.getFeatures().get(0).getConditions(RulesEvaluator.Options.CONDITIONS_ONLY);
+    List<CompiledCondition> second =
+        result.getFeatures().get(1).getConditions(RulesEvaluator.Options.CONDITIONS_ONLY);
+    assertSame(first.get(0), second.get(0));
+    assertNotSame(first.get(1), second.get(1));
+    assertEquals(3, result.getPredicateCount());
+  }
+
+  @Test
+  public void testCompile_OrdersConditionsByCost() {
+    // given
+    EvaluationCondition contains = new EvaluationCondition("user-profile:interests");
+    contains.setContains("travel");
+    EvaluationCondition equals = new EvaluationCondition("user-profile:segment", "RETAIL");
+    Feature feature =
+        new Feature("feature", new Requirements(null, Arrays.asList(contains, equals)));
+
+    // when
+    CompiledFeature result = new CompiledFeature(feature);
+
+    // then
+    List<CompiledCondition> declared = result.getConditions(RulesEvaluator.Options.CONDITIONS_ONLY);
+    List<CompiledCondition> order =
+        result.getEvaluationOrder(RulesEvaluator.Options.CONDITIONS_ONLY);
+    assertEquals(contains, declared.get(0).getCondition());
+    assertEquals(equals, order.get(0).getCondition());
+    assertEquals(contains, order.get(1).getCondition());
+  }
+
+  @Test
+  public void testReorder_ByPassRate() {
+    // given
+    CompiledFeature feature =
+        new CompiledFeature(newFeature("feature", Arrays.asList("GOLD"), "RETAIL"));
+    List<CompiledCondition> declared =
+        feature.getConditions(RulesEvaluator.Options.CONDITIONS_ONLY);
+    // equals is cheaper than notOneOf, but always passes
+    assertSame(
+        declared.get(1), feature.getEvaluationOrder(RulesEvaluator.Options.CONDITIONS_ONLY).get(0));
+    for (int i = 0; i < 200; i++) {
+      declared.get(0).getStatistics().record(i % 10 == 0);
+      declared.get(1).getStatistics().record(true);
+    }
+
+    // when
+    feature.reorder(RulesEvaluator.Options.CONDITIONS_ONLY);
+
+    // then
+    List<CompiledCondition> order =
+        feature.getEvaluationOrder(RulesEvaluator.Options.CONDITIONS_ONLY);
+    assertSame(declared.get(0), order.get(0));
+    assertSame(declared.get(1), order.get(1));
+    assertEquals(200, declared.get(0).getStatistics().getEvaluationCount());
+    assertEquals(0.1, declared.get(0).getStatistics().getPassRate(), 0.001);
+  }
+
+  @Test
+  public void testCompile_EmptyRules() {
+    // when
+    CompiledRules result = compiler.compile(new Rules());
+
+    // then
+    assertEquals(0, result.getFeatures().size());
+    assertTrue(result.getParametersByDataSource(RulesEvaluator.Options.CONDITIONS_ONLY).isEmpty());
+  }
+
+  @Test
+  public void testCompileCondition_OneOfIgnoresCase() {
+    // given
+    EvaluationCondition condition = new EvaluationCondition("user-profile:badge-level");
+    condition.setOneOf(Arrays.asList("Gold", "SILVER"));
+
+    // when
+    CompiledCondition result = new CompiledCondition(condition);
+
+    // then
+    assertEquals(new ParameterKey("user-profile", "badge-level"), result.getKey());
+    assertFalse(result.isNegative());
+    assertTrue(result.matches(new Parameter("user-profile:badge-level", "gold")));
+    assertFalse(result.matches(new Parameter("user-profile:badge-level", "bronze")));
+  }
+
+  @Test
+  public void testCompileCondition_NegativeOperator() {
+    // given
+    EvaluationCondition condition = new EvaluationCondition("user-profile:badge-level");
+    condition.setNotEquals("GOLD");
+
+    // when
+    CompiledCondition result = new CompiledCondition(condition);
+
+    // then
+    assertTrue(result.isNegative());
+    assertTrue(result.matches(result.getNullParameter()));
+  }
+
+  private Feature newFeature(String name, List<String> notOneOf, String equals) {
+    EvaluationCondition badgeLevel = new EvaluationCondition("user-profile:badge-level");
+    badgeLevel.setNotOneOf(notOneOf);
+    EvaluationCondition segment = new EvaluationCondition("user-profile:segment", equals);
+    return new Feature(
+        name, new Requirements(new ArrayList<>(), Arrays.asList(badgeLevel, segment)));
+  }
+}
@@ -7,15 +7,26 @@ package com.arctix.utilities.rulesengine.rules;
 import static org.junit.Assert.*;
 
 import com.arctix.utilities.rulesengine.datasources.models.DataSet;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledFeature;
 import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
 import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterKey;
+import com.arctix.utilities.rulesengine.rules.models.Requirements;
 import com.arctix.utilities.rulesengine.rules.models.RuleEvaluationResult;
 import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -330,6 +341,252 @@ public class RulesEvaluatorTest {
     assertFalse(result);
   }
 
+  @Test
+  public void testEvaluateCondition_MatchWithinDays_FixedClock() {
+    // given
+    DataSet dataSet = new DataSet();
+    dataSet.addParameter(new Parameter("user-profile:last-login", "2021-06-01T09:30:00+05:30"));
+    RulesEvaluator engine = fixedClockEvaluator(dataSet, "2021-06-15T12:00:00Z");
+
+    EvaluationCondition condition = new EvaluationCondition("user-profile:last-login");
+    condition.setWithinDays(14);
+
+    // when
+    boolean result = engine.evaluateCondition(condition);
+
+    // then
+    assertTrue(result);
+  }
+
+  @Test
+  public void testEvaluateCondition_MatchBeyondDays_FixedClock() {
+    // given
+    DataSet dataSet = new DataSet();
+    dataSet.addParameter(new Parameter("user-profile:last-login", "2021-06-01T09:30:00+05:30"));
+    RulesEvaluator engine = fixedClockEvaluator(dataSet, "2021-06-15T12:00:00Z");
+
+    EvaluationCondition condition = new EvaluationCondition("user-profile:last-login");
+    condition.setBeyondDays(14);
+
+    // when
+    boolean result = engine.evaluateCondition(condition);
+
+    // then
+    assertFalse(result);
+  }
+
+  @Test
+  public void testEvaluateCondition_MatchAfter_FixedClockWithNull() {
+    // given
+    RulesEvaluator engine = fixedClockEvaluator(new DataSet(), "2021-06-15T12:00:00Z");
+
+    EvaluationCondition condition = new EvaluationCondition("system-data:date-time");
+    condition.setAfter("2021-06-15T11:59:59.999Z");
+
+    // when
+    boolean result = engine.evaluateCondition(condition);
+
+    // then
+    assertTrue(result);
+  }
+
+  @Test
+  public void testEvaluate_SharedConditionEvaluatedOnce() {
+    // given
+    AtomicInteger lookups = new AtomicInteger();
+    DataSet dataSet =
+        new DataSet() {
+          @Override
+          public List<Parameter> getParameters(ParameterKey parameterKey) {
+            lookups.incrementAndGet();
+            return super.getParameters(parameterKey);
+          }
+        };
+    addMockRegistrationData(dataSet);
+    EvaluationCondition condition = new EvaluationCondition("user-profile:badge-level");
+    condition.setNotOneOf(Arrays.asList("GOLD", "SILVER"));
+    EvaluationCondition sameCondition = new EvaluationCondition("user-profile:badge-level");
+    sameCondition.setNotOneOf(Arrays.asList("GOLD", "SILVER"));
+    Rules rules =
+        new Rules(
+            Arrays.asList(
+                new Feature("feature1", new Requirements(null, Arrays.asList(condition))),
+                new Feature("feature2", new Requirements(null, Arrays.asList(sameCondition)))));
+    RulesEvaluator engine = new RulesEvaluator(dataSet, rules);
+
+    // when
+    List<RuleEvaluationResult> result = engine.evaluate();
+
+    // then
+    assertEquals(2, result.size());
+    assertEquals("true", result.get(0).getReturnValue());
+    assertEquals("true", result.get(1).getReturnValue());
+    // once for evaluating the shared condition, and once per feature for the matched result
+    assertEquals(3, lookups.get());
+  }
+
+  @Test
+  public void testEvaluate_OrCombination() {
+    // given
+    DataSet dataSet = new DataSet();
+    addMockRegistrationData(dataSet);
+    Rules rules =
+        rules(
+            feature("feature1", OR, BADGE_GOLD, BADGE_BRONZE),
+            feature("feature2", OR, BADGE_GOLD, BADGE_SILVER));
+    RulesEvaluator engine = new RulesEvaluator(dataSet, rules);
+
+    // when
+    List<RuleEvaluationResult> result = engine.evaluate();
+
+    // then
+    assertEquals("true", result.get(0).getReturnValue());
+    assertEquals("false", result.get(1).getReturnValue());
+  }
+
+  @Test
+  public void testEvaluate_AtLeastCombination() {
+    // given
+    DataSet dataSet = new DataSet();
+    addMockRegistrationData(dataSet);
+    Rules rules =
+        rules(
+            feature(
+                "feature1",
+                "{'combination': 'atLeast', 'minimum': 2}",
+                BADGE_GOLD,
+                BADGE_BRONZE,
+                REGISTERED_RECENTLY),
+            feature(
+                "feature2",
+                "{'combination': 'atLeast', 'minimum': 3}",
+                BADGE_GOLD,
+                BADGE_BRONZE,
+                REGISTERED_RECENTLY));
+    RulesEvaluator engine = new RulesEvaluator(dataSet, rules);
+
+    // when
+    List<RuleEvaluationResult> result = engine.evaluate();
+
+    // then
+    assertEquals("true", result.get(0).getReturnValue());
+    assertEquals("false", result.get(1).getReturnValue());
+  }
+
+  @Test
+  public void testEvaluate_AtLeastCombinationMinimumOutOfRange() {
+    // given
+    DataSet dataSet = new DataSet();
+    addMockRegistrationData(dataSet);
+    Rules rules =
+        rules(
+            feature("feature1", "{'combination': 'atLeast'}", BADGE_GOLD, BADGE_SILVER),
+            feature(
+                "feature2",
+                "{'combination': 'atLeast', 'minimum': 5}",
+                BADGE_BRONZE,
+                REGISTERED_RECENTLY));
+    RulesEvaluator engine = new RulesEvaluator(dataSet, rules);
+
+    // when
+    List<RuleEvaluationResult> result = engine.evaluate();
+
+    // then - a missing minimum requires one match, a minimum above size never matches
+    assertEquals("false", result.get(0).getReturnValue());
+    assertEquals("false", result.get(1).getReturnValue());
+  }
+
+  @Test
+  public void testEvaluate_NestedGroups() {
+    // given
+    DataSet dataSet = new DataSet();
+    addMockRegistrationData(dataSet);
+    Rules rules =
+        rules(
+            feature("feature1", null, BADGE_BRONZE, group(OR, BADGE_GOLD, REGISTERED_RECENTLY)),
+            feature("feature2", null, BADGE_BRONZE, group(OR, BADGE_GOLD, BADGE_SILVER)));
+    RulesEvaluator engine = new RulesEvaluator(dataSet, rules);
+
+    // when
+    List<RuleEvaluationResult> result = engine.evaluate();
+
+    // then
+    assertEquals("true", result.get(0).getReturnValue());
+    assertEquals(3, result.get(0).getMatched().size());
+    assertEquals("false", result.get(1).getReturnValue());
+  }
+
+  @Test
+  public void testGetFeaturesDecidedWithout() {
+    // given
+    DataSet dataSet = new DataSet();
+    addMockRegistrationData(dataSet);
+    String remote = "{'type': 'data', 'key': 'remote:segment', 'equals': 'RETAIL'}";
+    Rules rules =
+        rules(
+            feature("feature1", OR, BADGE_BRONZE, remote),
+            feature("feature2", null, BADGE_BRONZE, remote),
+            feature("feature3", null, BADGE_GOLD, remote));
+    RulesEvaluator engine =
+        new RulesEvaluator(
+            dataSet, RulesCompiler.compileRules(rules), RulesEvaluator.Options.CONDITIONS_ONLY);
+
+    // when
+    List<CompiledFeature> result = engine.getFeaturesDecidedWithout(setOf("remote"));
+
+    // then
+    assertEquals(2, result.size());
+    assertEquals("feature1", result.get(0).getName());
+    assertEquals("feature3", result.get(1).getName());
+  }
+
+  private static final String OR = "{'combination': 'or'}";
+  private static final String BADGE_GOLD =
+      "{'type': 'data', 'key': 'user-profile:badge-level', 'equals': 'GOLD'}";
+  private static final String BADGE_SILVER =
+      "{'type': 'data', 'key': 'user-profile:badge-level', 'equals': 'SILVER'}";
+  private static final String BADGE_BRONZE =
+      "{'type': 'data', 'key': 'user-profile:badge-level', 'equals': 'BRONZE'}";
+  private static final String REGISTERED_RECENTLY =
+      "{'type': 'data', 'key': 'user-profile:registration-date', 'withinDays': 100}";
+
+  /* rules with the given features, written in json with single quotes */
+  private Rules rules(String... features) {
+    String json = "{'features': [" + String.join(",", features) + "]}";
+    return new RulesFileLoader().load(json.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+  }
+
+  private String feature(String name, String options, String... conditions) {
+    return "{'name': '"
+        + name
+        + "', 'requirements': {'options': "
+        + options
+        + ", 'conditions': ["
+        + String.join(",", conditions)
+        + "]}}";
+  }
+
+  private String group(String options, String... conditions) {
+    return "{'type': 'group', 'options': "
+        + options
+        + ", 'conditions': ["
+        + String.join(",", conditions)
+        + "]}";
+  }
+
+  private Set<String> setOf(String... dataSources) {
+    return new HashSet<>(Arrays.asList(dataSources));
+  }
+
+  private RulesEvaluator fixedClockEvaluator(DataSet dataSet, String now) {
+    Clock clock = Clock.fixed(Instant.parse(now), ZoneOffset.UTC);
+    return new RulesEvaluator(
+        dataSet,
+        RulesCompiler.compileRules(new Rules()),
+        RulesEvaluator.Options.CONDITIONS_ONLY,
+        clock);
+  }
+
   private void addMockRuleEvaluationData(DataSet dataSet) {
     dataSet.addParameter(
         new Parameter(
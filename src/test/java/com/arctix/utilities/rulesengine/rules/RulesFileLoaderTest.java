@@ -4,9 +4,24 @@
  @year: 2021 */
 package com.arctix.utilities.rulesengine.rules;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
+import com.arctix.utilities.rulesengine.config.RulesLoaderProperties;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
+import com.arctix.utilities.rulesengine.rules.models.FetchMode;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.ParameterJsonDeserializer;
 import com.arctix.utilities.rulesengine.rules.models.Rules;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -39,4 +54,85 @@ public class RulesFileLoaderTest {
     Rules rules = loader.load(content);
     assertNotNull(rules);
   }
+
+  @Test
+  public void testLoadFromByteArray_SkipsUnknownProperties() {
+    // given
+    byte[] content =
+        ("{'description': 'test', 'extra': {'features': []}, 'fetchMode': 'deferred',"
+                + " 'features': [{'name': 'feature1', 'extra': [1, 2]}]}")
+            .replace('\'', '"')
+            .getBytes();
+
+    // when
+    Rules rules = loader.load(content);
+
+    // then
+    assertEquals(FetchMode.DEFERRED, rules.getFetchMode());
+    assertEquals(1, rules.getFeatures().size());
+    assertEquals("feature1", rules.getFeatures().get(0).getName());
+  }
+
+  @Test
+  public void testLoadFromByteArray_SameAsGson() throws Exception {
+    // given
+    Path file = Paths.get("src/test/resources/notification-business-rules.json");
+    String json =
+        new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+            .replaceFirst("\\{", "{\"fetchMode\": \"singlePass\",");
+    Gson gson =
+        new GsonBuilder()
+            .registerTypeAdapter(Parameter.class, new ParameterJsonDeserializer())
+            .create();
+
+    // when
+    Rules rules = loader.load(json.getBytes(StandardCharsets.UTF_8));
+
+    // then
+    assertEquals(FetchMode.SINGLE_PASS, rules.getFetchMode());
+    assertEquals(gson.toJson(gson.fromJson(json, Rules.class)), gson.toJson(rules));
+  }
+
+  @Test
+  public void testLoadFromByteArray_Empty() {
+    assertNull(loader.load(new byte[0]));
+  }
+
+  @Test
+  public void testLoadFromByteArray_InParallelChunks() {
+    // given
+    RulesFileLoader parallelLoader = new RulesFileLoader();
+    parallelLoader.setProperties(new RulesLoaderProperties.Builder().parallelChunkSize(2).build());
+    byte[] content = features("feature1", "feature2", "feature3", "feature4", "feature5");
+
+    // when
+    Rules rules = parallelLoader.load(content);
+
+    // then
+    assertEquals(5, rules.getFeatures().size());
+    assertEquals(names(loader.load(content)), names(rules));
+    Feature feature = rules.getFeatures().get(4);
+    assertEquals("feature5", feature.getName());
+    assertEquals("k:attribute5", feature.getRequirements().getConditions().get(0).getKey());
+  }
+
+  private static byte[] features(String... names) {
+    String features =
+        Arrays.stream(names)
+            .map(
+                name ->
+                    String.format(
+                        "{'name': '%s', 'requirements': {'conditions': [%s]}}",
+                        name, condition(name.replace("feature", "attribute"))))
+            .collect(Collectors.joining(","));
+    return ("{'features': [" + features + "]}").replace('\'', '"').getBytes();
+  }
+
+  private static String condition(String attribute) {
+    return String.format("{'type': 'data', 'key': 'k:%s', 'equals': 'x'}", attribute);
+  }
+
+  private static String names(Rules rules) {
+    return rules.getFeatures().stream().map(Feature::getName).collect(Collectors.joining(","));
+  }
 }
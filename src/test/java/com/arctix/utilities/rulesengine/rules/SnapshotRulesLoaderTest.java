@@ -0,0 +1,293 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.rules;
+
+import static org.junit.Assert.*;
+
+import com.arctix.utilities.rulesengine.rules.compiled.Combination;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledCondition;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledFeature;
+import com.arctix.utilities.rulesengine.rules.compiled.CompiledRules;
+import com.arctix.utilities.rulesengine.rules.compiled.ConditionGroup;
+import com.arctix.utilities.rulesengine.rules.models.Action;
+import com.arctix.utilities.rulesengine.rules.models.EvaluationCondition;
+import com.arctix.utilities.rulesengine.rules.models.Feature;
+import com.arctix.utilities.rulesengine.rules.models.FetchMode;
+import com.arctix.utilities.rulesengine.rules.models.Parameter;
+import com.arctix.utilities.rulesengine.rules.models.RequirementMatchingOptions;
+import com.arctix.utilities.rulesengine.rules.models.Requirements;
+import com.arctix.utilities.rulesengine.rules.models.Rules;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SnapshotRulesLoaderTest {
+  SnapshotRulesLoader loader = new SnapshotRulesLoader();
+
+  @Test
+  public void testLoadFromByteArray() {
+    // given
+    Rules rules = new RulesFileLoader().load("notification-business-rules");
+
+    // when
+    Rules loaded = loader.load(RulesSnapshot.toBytes(rules));
+
+    // then
+    assertSameRules(rules, loaded);
+  }
+
+  @Test
+  public void testLoadFromFileSystem() throws IOException {
+    // given
+    Rules rules = groupedRules();
+    File file = File.createTempFile("rules", ".snapshot");
+    file.deleteOnExit();
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      RulesSnapshot.write(rules, outputStream);
+    }
+
+    // when
+    Rules loaded = loader.load("file:" + file.getPath());
+
+    // then
+    assertEquals(FetchMode.DEFERRED, loaded.getFetchMode());
+    assertSameRules(rules, loaded);
+    EvaluationCondition group =
+        loaded.getFeatures().get(0).getRequirements().getConditions().get(1);
+    assertTrue(group.isGroup());
+    assertEquals(new RequirementMatchingOptions("atLeast", 1), group.getOptions());
+    assertEquals(Arrays.asList("GOLD", "SILVER"), group.getConditions().get(0).getOneOf());
+  }
+
+  @Test
+  public void testLoad_SharesStrings() {
+    // given
+    Rules rules = groupedRules();
+
+    // when
+    Rules loaded = loader.load(RulesSnapshot.toBytes(rules));
+
+    // then
+    Feature feature = loaded.getFeatures().get(0);
+    assertSame(
+        feature.getRequirements().getConditions().get(0).getKey(),
+        feature.getRequirements().getPostConditions().get(0).getKey());
+  }
+
+  @Test
+  public void testLoadCompiled_SameAsCompiledRules() {
+    // given
+    Rules rules = new RulesFileLoader().load("notification-business-rules");
+
+    // when
+    CompiledRules loaded =
+        RulesSnapshot.readCompiled(ByteBuffer.wrap(RulesSnapshot.toBytes(rules)));
+
+    // then
+    assertSameCompiledRules(RulesCompiler.compileRules(rules), loaded);
+    assertSameRules(rules, loaded.getRules());
+  }
+
+  @Test
+  public void testLoadCompiled_FromFileSystem() throws IOException {
+    // given
+    Rules rules = groupedRules();
+    File file = File.createTempFile("rules", ".snapshot");
+    file.deleteOnExit();
+    try (OutputStream outputStream = new FileOutputStream(file)) {
+      RulesSnapshot.write(rules, outputStream);
+    }
+
+    // when
+    CompiledRules loaded = loader.loadCompiled("file:" + file.getPath()).join();
+
+    // then
+    assertEquals(FetchMode.DEFERRED, loaded.getFetchMode());
+    assertSameCompiledRules(RulesCompiler.compileRules(rules), loaded);
+    CompiledFeature feature = loaded.getFeatures().get(0);
+    assertEquals("Y", feature.getReturnValue(true));
+    ConditionGroup main = feature.getConditionGroup(RulesEvaluator.Options.CONDITIONS_ONLY);
+    assertEquals(Combination.OR, main.getCombination());
+    ConditionGroup group = main.getGroups().get(0);
+    assertEquals(Combination.AT_LEAST, group.getCombination());
+    assertEquals(1, group.getRequiredMatches());
+    // the registration condition is shared by pre-conditions and the group
+    CompiledCondition registered =
+        feature.getConditions(RulesEvaluator.Options.PRE_CONDITIONS_ONLY).get(0);
+    assertTrue(
+        group.getConditions().stream()
+            .anyMatch(condition -> condition.getIndex() == registered.getIndex()));
+    assertTrue(
+        group.getConditions().get(0).matches(new Parameter("user-profile:badge-level", "GOLD")));
+    assertSameRules(rules, loaded.getRules());
+  }
+
+  @Test
+  public void testLoadCompiled_SharesStrings() {
+    // given
+    Rules rules = groupedRules();
+
+    // when
+    CompiledRules loaded =
+        RulesSnapshot.readCompiled(ByteBuffer.wrap(RulesSnapshot.toBytes(rules)));
+
+    // then
+    CompiledFeature feature = loaded.getFeatures().get(0);
+    CompiledCondition segment =
+        feature.getConditions(RulesEvaluator.Options.CONDITIONS_ONLY).get(0);
+    CompiledCondition postSegment =
+        feature.getConditions(RulesEvaluator.Options.POST_CONDITIONS_ONLY).get(0);
+    assertTrue(segment.getIndex() != postSegment.getIndex());
+    assertSame(segment.getKey().getDataSource(), postSegment.getKey().getDataSource());
+    assertSame(segment.getKey().getName(), postSegment.getKey().getName());
+  }
+
+  @Test
+  public void testLoadCompiled_Dates() {
+    // given
+    EvaluationCondition after = new EvaluationCondition("user-profile:registered-on");
+    after.setAfter("2021-06-15T00:00:00Z");
+    EvaluationCondition before = new EvaluationCondition("user-profile:last-login");
+    before.setBefore("2021-06-15T10:20:30Z");
+    Rules rules =
+        new Rules(
+            Arrays.asList(
+                new Feature(
+                    "feature1",
+                    new Requirements(Collections.emptyList(), Arrays.asList(after, before)))));
+
+    // when
+    CompiledRules loaded =
+        RulesSnapshot.readCompiled(ByteBuffer.wrap(RulesSnapshot.toBytes(rules)));
+
+    // then
+    List<CompiledCondition> conditions =
+        loaded.getFeatures().get(0).getConditions(RulesEvaluator.Options.CONDITIONS_ONLY);
+    assertTrue(conditions.get(0).matches(new Parameter(after.getKey(), "2021-06-16T00:00:00Z")));
+    assertFalse(conditions.get(0).matches(new Parameter(after.getKey(), "2021-06-14T00:00:00Z")));
+    assertTrue(conditions.get(1).matches(new Parameter(before.getKey(), "2021-06-15T10:20:29Z")));
+    assertFalse(conditions.get(1).matches(new Parameter(before.getKey(), "2021-06-15T10:20:31Z")));
+    assertEquals(after, conditions.get(0).getCondition());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testLoad_UnsupportedVersion() {
+    // given
+    byte[] content = RulesSnapshot.toBytes(groupedRules());
+    content[7] = (byte) (RulesSnapshot.VERSION + 1);
+
+    // when
+    loader.load(content);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testLoad_NotASnapshot() {
+    loader.load("{\"features\": []}".getBytes());
+  }
+
+  private static Rules groupedRules() {
+    EvaluationCondition segment = new EvaluationCondition("user-profile:segment", "RETAIL");
+    EvaluationCondition badge =
+        new EvaluationCondition("user-profile:badge-level", Arrays.asList("GOLD", "SILVER"));
+    EvaluationCondition registered = new EvaluationCondition("user-profile:registration", 180);
+    EvaluationCondition group = new EvaluationCondition();
+    group.setType(EvaluationCondition.GROUP_TYPE);
+    group.setOptions(new RequirementMatchingOptions("atLeast", 1));
+    group.setConditions(Arrays.asList(badge, registered));
+
+    Feature feature =
+        new Feature(
+            "feature1",
+            new Requirements(
+                Arrays.asList(registered), Arrays.asList(segment, group)));
+    feature
+        .getRequirements()
+        .setPostConditions(Arrays.asList(new EvaluationCondition("user-profile:segment", "X")));
+    feature.getRequirements().setOptions(new RequirementMatchingOptions("or"));
+    feature.setActions(Arrays.asList(new Action("return", "notify", "Y")));
+
+    Rules rules = new Rules(Arrays.asList(feature));
+    rules.setFetchMode(FetchMode.DEFERRED);
+    return rules;
+  }
+
+  private static void assertSameCompiledRules(CompiledRules expected, CompiledRules actual) {
+    assertEquals(expected.getFetchMode(), actual.getFetchMode());
+    assertEquals(expected.getPredicateCount(), actual.getPredicateCount());
+    assertEquals(expected.getFeatures().size(), actual.getFeatures().size());
+    for (RulesEvaluator.Options options : RulesEvaluator.Options.values()) {
+      assertEquals(
+          expected.getParametersByDataSource(options), actual.getParametersByDataSource(options));
+    }
+    for (int i = 0; i < expected.getFeatures().size(); i++) {
+      CompiledFeature expectedFeature = expected.getFeatures().get(i);
+      CompiledFeature actualFeature = actual.getFeatures().get(i);
+      assertEquals(expectedFeature.getName(), actualFeature.getName());
+      assertEquals(expectedFeature.getReturnValue(true), actualFeature.getReturnValue(true));
+      assertEquals(expectedFeature.getReturnValue(false), actualFeature.getReturnValue(false));
+      for (RulesEvaluator.Options options : RulesEvaluator.Options.values()) {
+        assertSameGroup(
+            expectedFeature.getConditionGroup(options), actualFeature.getConditionGroup(options));
+      }
+    }
+  }
+
+  private static void assertSameGroup(ConditionGroup expected, ConditionGroup actual) {
+    assertEquals(expected.getCombination(), actual.getCombination());
+    assertEquals(expected.getRequiredMatches(), actual.getRequiredMatches());
+    assertSameConditions(expected.getConditions(), actual.getConditions());
+    assertSameConditions(expected.getAllConditions(), actual.getAllConditions());
+    assertEquals(expected.getGroups().size(), actual.getGroups().size());
+    for (int i = 0; i < expected.getGroups().size(); i++) {
+      assertSameGroup(expected.getGroups().get(i), actual.getGroups().get(i));
+    }
+  }
+
+  private static void assertSameConditions(
+      List<CompiledCondition> expected, List<CompiledCondition> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getIndex(), actual.get(i).getIndex());
+      assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+      assertEquals(expected.get(i).isNegative(), actual.get(i).isNegative());
+      assertEquals(expected.get(i).getCondition(), actual.get(i).getCondition());
+    }
+  }
+
+  private static void assertSameRules(Rules expected, Rules actual) {
+    assertEquals(expected.getFetchMode(), actual.getFetchMode());
+    assertEquals(expected.getFeatures().size(), actual.getFeatures().size());
+    for (int i = 0; i < expected.getFeatures().size(); i++) {
+      Feature expectedFeature = expected.getFeatures().get(i);
+      Feature actualFeature = actual.getFeatures().get(i);
+      assertEquals(expectedFeature.getName(), actualFeature.getName());
+      assertEquals(
+          expectedFeature.getRequirements().getOptions(),
+          actualFeature.getRequirements().getOptions());
+      assertEquals(
+          expectedFeature.getRequirements().getPreConditions(),
+          actualFeature.getRequirements().getPreConditions());
+      assertEquals(
+          expectedFeature.getRequirements().getConditions(),
+          actualFeature.getRequirements().getConditions());
+      assertEquals(
+          expectedFeature.getRequirements().getPostConditions(),
+          actualFeature.getRequirements().getPostConditions());
+      assertEquals(
+          new CompiledFeature(expectedFeature).getReturnValue(true),
+          new CompiledFeature(actualFeature).getReturnValue(true));
+      assertEquals(expectedFeature.getTestData(), actualFeature.getTestData());
+    }
+  }
+}
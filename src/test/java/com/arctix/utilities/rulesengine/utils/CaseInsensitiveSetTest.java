@@ -0,0 +1,73 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CaseInsensitiveSetTest {
+
+  @Test
+  public void testContains_IgnoresCase() {
+    // given
+    CaseInsensitiveSet set = new CaseInsensitiveSet(Arrays.asList("Gold", "SILVER", null, "gold"));
+
+    // when - then
+    assertEquals(2, set.size());
+    assertTrue(set.contains("GOLD"));
+    assertTrue(set.contains("silver"));
+    assertFalse(set.contains("bronze"));
+    assertFalse(set.contains("gol"));
+    assertFalse(set.contains(null));
+  }
+
+  @Test
+  public void testContains_Empty() {
+    // given
+    CaseInsensitiveSet set = new CaseInsensitiveSet(Collections.emptyList());
+
+    // when - then
+    assertEquals(0, set.size());
+    assertFalse(set.contains("gold"));
+  }
+
+  @Test
+  public void testContains_LargeSet() {
+    // given
+    List<String> zipCodes = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      zipCodes.add(String.format("ZIP-%05d", i));
+    }
+
+    // when
+    CaseInsensitiveSet set = new CaseInsensitiveSet(zipCodes);
+
+    // then
+    assertEquals(10000, set.size());
+    for (String zipCode : zipCodes) {
+      assertTrue(set.contains(zipCode.toLowerCase()));
+    }
+    assertFalse(set.contains("zip-10000"));
+  }
+
+  @Test
+  public void testContains_MatchesEqualsIgnoreCase() {
+    // given - dotted capital I, which lower-cases to two chars
+    CaseInsensitiveSet set = new CaseInsensitiveSet(Arrays.asList("\u0130stanbul"));
+
+    // when - then
+    assertTrue("\u0130stanbul".equalsIgnoreCase("istanbul"));
+    assertTrue(set.contains("istanbul"));
+    assertTrue(set.contains("ISTANBUL"));
+  }
+}
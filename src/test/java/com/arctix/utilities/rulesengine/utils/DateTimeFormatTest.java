@@ -0,0 +1,148 @@
+/* Use of this source code is subject to terms of MIT license.
+ @author: Arjun Prasad
+ @license: MIT
+ @year: 2021 */
+package com.arctix.utilities.rulesengine.utils;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DateTimeFormatTest {
+
+  @Test
+  public void testParseIsoEpochMillis_Date() {
+    // when - then
+    assertEquals(0L, DateTimeFormat.parseIsoEpochMillis("1970-01-01"));
+    assertEquals(
+        LocalDate.of(2021, 6, 15).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli(),
+        DateTimeFormat.parseIsoEpochMillis("2021-06-15"));
+    assertEquals(
+        -DateTimeFormat.MILLIS_PER_DAY, DateTimeFormat.parseIsoEpochMillis("1969-12-31"));
+  }
+
+  @Test
+  public void testParseIsoEpochMillis_FractionalSeconds() {
+    // when - then
+    long second = DateTimeFormat.parseIsoEpochMillis("2021-06-15T10:20:30Z");
+    assertEquals(second + 500, DateTimeFormat.parseIsoEpochMillis("2021-06-15T10:20:30.5Z"));
+    assertEquals(second + 50, DateTimeFormat.parseIsoEpochMillis("2021-06-15T10:20:30.05Z"));
+    assertEquals(second + 123, DateTimeFormat.parseIsoEpochMillis("2021-06-15T10:20:30.123Z"));
+    // digits beyond milliseconds are ignored
+    assertEquals(
+        second + 123, DateTimeFormat.parseIsoEpochMillis("2021-06-15T10:20:30.123999999Z"));
+  }
+
+  @Test
+  public void testParseIsoEpochMillis_Offsets() {
+    // when
+    long utc = DateTimeFormat.parseIsoEpochMillis("2021-06-15T10:20:30Z");
+    long india = DateTimeFormat.parseIsoEpochMillis("2021-06-15T15:50:30+05:30");
+    long pacific = DateTimeFormat.parseIsoEpochMillis("2021-06-15T03:20:30-07:00");
+    long zero = DateTimeFormat.parseIsoEpochMillis("2021-06-15T10:20:30+00:00");
+
+    // then
+    assertEquals(utc, india);
+    assertEquals(utc, pacific);
+    assertEquals(utc, zero);
+  }
+
+  @Test
+  public void testParseIsoEpochMillis_LeapDays() {
+    // when - then
+    assertEquals(
+        DateTimeFormat.parseIsoEpochMillis("2024-02-28") + DateTimeFormat.MILLIS_PER_DAY,
+        DateTimeFormat.parseIsoEpochMillis("2024-02-29"));
+    assertEquals(
+        DateTimeFormat.parseIsoEpochMillis("2024-02-29") + DateTimeFormat.MILLIS_PER_DAY,
+        DateTimeFormat.parseIsoEpochMillis("2024-03-01"));
+    assertEquals(
+        LocalDate.of(2000, 2, 29).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli(),
+        DateTimeFormat.parseIsoEpochMillis("2000-02-29"));
+    assertMalformed("2023-02-29");
+    assertMalformed("1900-02-29");
+    assertMalformed("2100-02-29T00:00:00Z");
+  }
+
+  @Test
+  public void testParseIsoEpochMillis_Malformed() {
+    // when - then
+    List<String> malformed =
+        Arrays.asList(
+            null,
+            "",
+            "  ",
+            "2021",
+            "2021-6-15",
+            "2021/06/15",
+            "2021-00-15",
+            "2021-13-15",
+            "2021-06-00",
+            "2021-06-31",
+            "2021-06-15T",
+            "2021-06-15 10:20:30Z",
+            "2021-06-15T10:20:30",
+            "2021-06-15T10:20Z",
+            "2021-06-15T24:00:00Z",
+            "2021-06-15T10:60:30Z",
+            "2021-06-15T10:20:60Z",
+            "2021-06-15T10:20:30.Z",
+            "2021-06-15T10:20:30.1234567890Z",
+            "2021-06-15T10:20:30+0530",
+            "2021-06-15T10:20:30+05",
+            "2021-06-15T10:20:30+19:00",
+            "2021-06-15T10:20:30+18:30",
+            "2021-06-15T10:20:30+05:60",
+            "2021-06-15T10:20:30Zx",
+            "2021-06-15T1a:20:30Z",
+            "abcd-ef-ghTij:kl:mnZ");
+    malformed.forEach(DateTimeFormatTest::assertMalformed);
+  }
+
+  @Test
+  public void testParseIsoEpochMillis_SameAsZonedDateTime() {
+    // given
+    List<String> dateTimes =
+        Arrays.asList(
+            "1970-01-01T00:00:00Z",
+            "1969-12-31T23:59:59.999Z",
+            "1900-01-01T00:00:00Z",
+            "0001-01-01T00:00:00Z",
+            "9999-12-31T23:59:59.999999999Z",
+            "2000-02-29T12:00:00+01:00",
+            "2021-06-15T10:20:30.1-03:30",
+            "2021-12-31T23:59:59.98765+14:00",
+            "2021-01-01T00:00:00-18:00",
+            "2021-01-01T00:00:00+18:00");
+
+    // when - then
+    for (String dateTime : dateTimes) {
+      assertEquals(
+          dateTime,
+          ZonedDateTime.parse(dateTime).toInstant().toEpochMilli(),
+          DateTimeFormat.parseIsoEpochMillis(dateTime));
+      // parseIsoDateTime only accepts 'Z' and negative offsets
+      assertEquals(
+          dateTime,
+          DateTimeFormat.parseIsoDateTime(dateTime.replace("+", "-")).toInstant().toEpochMilli(),
+          DateTimeFormat.parseIsoEpochMillis(dateTime.replace("+", "-")));
+    }
+  }
+
+  private static void assertMalformed(String dateTime) {
+    try {
+      DateTimeFormat.parseIsoEpochMillis(dateTime);
+      fail("Parsed malformed date-time: " + dateTime);
+    } catch (RuntimeException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().startsWith("Unknown date-time"));
+    }
+  }
+}